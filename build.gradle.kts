@@ -7,6 +7,7 @@ plugins {
     id("io.spring.dependency-management") version "1.1.7"
     id("java-library")
     id("maven-publish")
+    id("me.champeau.jmh") version "0.7.3"
     id("org.springframework.boot") version "4.1.1"
     id("signing")
 }
@@ -23,11 +24,21 @@ dependencies {
     // spring
     implementation("org.springframework.boot:spring-boot-starter")
     implementation("org.springframework.boot:spring-boot-starter-json")
+    // optional, only needed for @MetricTimed
+    compileOnly("org.springframework.boot:spring-boot-starter-aspectj")
+    // optional, only needed for the micrometer registry
+    compileOnly("io.micrometer:micrometer-core")
     // aws
     implementation("software.amazon.awssdk:cloudwatch:2.54.0")
+    implementation("software.amazon.awssdk:netty-nio-client:2.54.0")
+    // optional, only needed for aws.client.http-client=crt
+    compileOnly("software.amazon.awssdk:aws-crt-client:2.54.0")
 
     // test
     testImplementation("org.springframework.boot:spring-boot-starter-test")
+    testImplementation("org.springframework.boot:spring-boot-starter-aspectj")
+    testImplementation("io.micrometer:micrometer-core")
+    testImplementation("software.amazon.awssdk:aws-crt-client:2.54.0")
     testImplementation("nl.jqno.equalsverifier:equalsverifier:4.5.1")
 }
 
@@ -77,6 +88,11 @@ publishing {
     }
 }
 
+jmh {
+    jmhVersion = "1.37"
+    profilers = listOf("gc")
+}
+
 signing {
     sign(publishing.publications["maven"])
 }
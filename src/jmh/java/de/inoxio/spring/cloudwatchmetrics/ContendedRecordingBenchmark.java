@@ -0,0 +1,76 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// several threads recording into the same series of one buffered dao
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ContendedRecordingBenchmark {
+
+    @Param({"VALUES", "STATISTIC_SET", "HISTOGRAM"})
+    private MetricAggregation aggregation;
+
+    private BufferedCloudwatchDAO bufferedDAO;
+    private MetricCounter counter;
+    private MetricTimer timer;
+
+    @Setup
+    public void setUp() {
+        bufferedDAO = new BufferedCloudwatchDAO(new StubCloudWatchAsyncClient(), new ObjectMapper());
+        bufferedDAO.setMetricPrefix("Benchmark");
+        bufferedDAO.setNamespace("Benchmark");
+        bufferedDAO.setAggregation(aggregation);
+        counter = bufferedDAO.counter("Counter");
+        timer = bufferedDAO.timer("Timer");
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        bufferedDAO.flush();
+    }
+
+    @Benchmark
+    public void pushMetrics() {
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("Latency")
+                                                      .value(ThreadLocalRandom.current().nextInt(1000))
+                                                      .build());
+    }
+
+    @Benchmark
+    public void recordValue() {
+        bufferedDAO.recordValue("Latency", ThreadLocalRandom.current().nextDouble(1, 1000));
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void timerRecord() {
+        timer.recordNanos(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+}
@@ -0,0 +1,58 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// cost of parsing, annotating and serializing dashboard bodies of realistic size
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DashboardBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int widgetCount;
+
+    private ObjectMapper objectMapper;
+    private CloudwatchRestDAO directDAO;
+    private String dashboardBody;
+    private WidgetsDTO widgets;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new CloudwatchConfig().jacksonBuilder().build();
+        directDAO = new CloudwatchRestDAO(new StubCloudWatchAsyncClient(), objectMapper);
+        directDAO.setMetricPrefix("Benchmark");
+        dashboardBody = DashboardBodies.dashboardBody(widgetCount, "Benchmark");
+        widgets = objectMapper.readValue(dashboardBody, WidgetsDTO.class);
+    }
+
+    @Benchmark
+    public WidgetsDTO parse() throws IOException {
+        return objectMapper.readValue(dashboardBody, WidgetsDTO.class);
+    }
+
+    @Benchmark
+    public String serialize() throws IOException {
+        return objectMapper.writeValueAsString(widgets);
+    }
+
+    @Benchmark
+    public DashboardAnnotator.Annotated annotateWidgets() {
+        return directDAO.annotateWidgets(dashboardBody);
+    }
+}
@@ -0,0 +1,41 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+final class DashboardBodies {
+
+    private DashboardBodies() {
+    }
+
+    // every fourth widget shows metrics of the given prefix, the others show metrics of other applications
+    static String dashboardBody(final int widgetCount, final String metricPrefix) {
+        final var body = new StringBuilder("{\"widgets\":[");
+        for (var i = 0; i < widgetCount; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            final var prefix = i % 4 == 0 ? metricPrefix : "Other" + i;
+            body.append("{\"type\":\"metric\",\"x\":").append(i % 2 * 12).append(",\"y\":").append(i * 6)
+                .append(",\"width\":12,\"height\":6,\"properties\":{\"metrics\":[")
+                .append("[{\"expression\":\"m2-m1\",\"visible\":false,\"color\":\"#1f77b4\",\"id\":\"e1\",")
+                .append("\"label\":\"HeapMemory: Free\"}],")
+                .append("[\"Namespace\",\"").append(prefix).append("HeapMemoryUsed\",\"ClusterName\",")
+                .append("\"test-cluster\",{\"color\":\"#1f77b4\",\"id\":\"m1\",\"label\":\"HeapMemory: Used\"}],")
+                .append("[\".\",\"").append(prefix).append("HeapMemoryCommitted\",\".\",\".\",")
+                .append("{\"color\":\"#1f77b4\",\"id\":\"m2\",\"label\":\"HeapMemory: Available\"}],")
+                .append("[\".\",\"").append(prefix).append("ProcessCpuLoad\",\".\",\".\",")
+                .append("{\"yAxis\":\"right\",\"color\":\"#e377c2\",\"id\":\"m5\",\"label\":\"Cpu\"}]],")
+                .append("\"view\":\"timeSeries\",\"stacked\":false,\"region\":\"eu-central-1\",")
+                .append("\"yAxis\":{\"left\":{\"label\":\"MB\",\"min\":0,\"showUnits\":false},")
+                .append("\"right\":{\"label\":\"%\",\"min\":0,\"max\":100,\"showUnits\":false}},")
+                .append("\"annotations\":{\"vertical\":[");
+            for (var annotation = 0; annotation < 5; annotation++) {
+                if (annotation > 0) {
+                    body.append(',');
+                }
+                body.append("{\"label\":\"").append(prefix).append(" Start\",\"value\":\"2024-0")
+                    .append(annotation + 1).append("-12T08:15:30Z\"}");
+            }
+            body.append("]},\"title\":\"Monitoring ").append(i).append("\"}}");
+        }
+        return body.append("]}").toString();
+    }
+}
@@ -0,0 +1,61 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// the whole recording, aggregation and encoding path of one flush, without any network or AWS account
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlushBenchmark {
+
+    private static final int SERIES = 100;
+    private static final int VALUES_PER_SERIES = 10;
+
+    @Param({"IN_MEMORY", "EMF"})
+    private String transport;
+
+    private BufferedCloudwatchDAO bufferedDAO;
+    private DimensionKeyPair[] endpoints;
+
+    @Setup
+    public void setUp() {
+        bufferedDAO = new BufferedCloudwatchDAO(new StubCloudWatchAsyncClient(), new ObjectMapper());
+        bufferedDAO.setMetricPrefix("Benchmark");
+        bufferedDAO.setNamespace("Benchmark");
+        bufferedDAO.setTransport("EMF".equals(transport)
+                                 ? new EmfWriter(OutputStream.nullOutputStream())
+                                 : new InMemoryMetricTransport(false));
+        endpoints = new DimensionKeyPair[SERIES];
+        for (var i = 0; i < SERIES; i++) {
+            endpoints[i] = dimensionKeyPairBuilder().name("Endpoint").value("/endpoint/" + i).build();
+        }
+    }
+
+    @Benchmark
+    public void recordAndFlush() {
+        for (var value = 0; value < VALUES_PER_SERIES; value++) {
+            for (final var endpoint : endpoints) {
+                bufferedDAO.recordValue("Latency", value, endpoint);
+            }
+        }
+        bufferedDAO.flush();
+    }
+}
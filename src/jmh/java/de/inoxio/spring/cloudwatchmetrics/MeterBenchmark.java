@@ -0,0 +1,98 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
+
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+// compares pushMetrics with the pre-registered meter handles for recording one sample per call
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MeterBenchmark {
+
+    private CloudwatchRestDAO directDAO;
+    private BufferedCloudwatchDAO bufferedDAO;
+    private MetricCounter counter;
+    private MetricGauge gauge;
+    private MetricTimer timer;
+    private MetricTimer histogramTimer;
+    private long sample;
+
+    @Setup
+    public void setUp() {
+        directDAO = new CloudwatchRestDAO(new StubCloudWatchAsyncClient(), new ObjectMapper());
+        StubCloudWatchAsyncClient.removeLimits(directDAO);
+        directDAO.setMetricPrefix("Benchmark");
+        directDAO.setNamespace("Benchmark");
+
+        bufferedDAO = new BufferedCloudwatchDAO(new StubCloudWatchAsyncClient(), new ObjectMapper());
+        StubCloudWatchAsyncClient.removeLimits(bufferedDAO);
+        bufferedDAO.setMetricPrefix("Benchmark");
+        bufferedDAO.setNamespace("Benchmark");
+        counter = bufferedDAO.counter("Counter");
+        gauge = bufferedDAO.gauge("Gauge");
+        timer = bufferedDAO.timer("Timer");
+        histogramTimer = bufferedDAO.timer("HistogramTimer", StandardUnit.MILLISECONDS, MetricAggregation.HISTOGRAM);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        bufferedDAO.flush();
+    }
+
+    @Benchmark
+    public void pushMetricsDirect() {
+        directDAO.pushMetrics(metricKeyPairBuilder().name("Counter").value(1).build());
+    }
+
+    @Benchmark
+    public void pushMetricsBuffered() {
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("Counter").value(1).build());
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void gaugeSet() {
+        gauge.set(sample++);
+    }
+
+    @Benchmark
+    public void timerRecord() {
+        timer.recordNanos(sample++ & 0xFFFF);
+    }
+
+    @Benchmark
+    public void histogramTimerRecord() {
+        histogramTimer.recordNanos(sample++ & 0xFFFF);
+    }
+
+    // the gc profiler shows whether the sample is scalar replaced
+    @Benchmark
+    @SuppressWarnings("try")
+    public void timerSample() {
+        try (var running = timer.start()) {
+            sample++;
+        }
+    }
+}
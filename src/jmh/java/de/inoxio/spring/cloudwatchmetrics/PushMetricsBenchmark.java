@@ -0,0 +1,54 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// cost of turning metric key pairs into put metric data requests, including chunking
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PushMetricsBenchmark {
+
+    @Param({"1", "10", "100", "1000", "5000"})
+    private int metricCount;
+
+    private CloudwatchRestDAO directDAO;
+    private MetricKeyPair[] metrics;
+
+    @Setup
+    public void setUp() {
+        directDAO = new CloudwatchRestDAO(new StubCloudWatchAsyncClient(), new ObjectMapper());
+        StubCloudWatchAsyncClient.removeLimits(directDAO);
+        directDAO.setMetricPrefix("Benchmark");
+        directDAO.setNamespace("Benchmark");
+        directDAO.addDimension(DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder()
+                                                                       .name("ClusterName")
+                                                                       .value("benchmark-cluster")
+                                                                       .build());
+        metrics = IntStream.range(0, metricCount)
+                           .mapToObj(i -> metricKeyPairBuilder().name("Metric" + i).value(i).build())
+                           .toArray(MetricKeyPair[]::new);
+    }
+
+    @Benchmark
+    public void pushMetrics() {
+        directDAO.pushMetrics(metrics);
+    }
+}
@@ -0,0 +1,43 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+// answers every request immediately, so benchmarks measure the library and not the network
+class StubCloudWatchAsyncClient implements CloudWatchAsyncClient {
+
+    private static final PutMetricDataResponse RESPONSE = PutMetricDataResponse.builder().build();
+
+    // effectively no rate limit, the stub never throttles
+    private static final double UNLIMITED_REQUESTS_PER_SECOND = 1e9;
+
+    private final LongAdder putMetricDataRequests = new LongAdder();
+
+    // with the default rate limit and pending window a benchmark would mostly measure throttling and dropping
+    static void removeLimits(final CloudwatchRestDAO dao) {
+        dao.setMaxRequestsPerSecond(UNLIMITED_REQUESTS_PER_SECOND);
+        dao.setMaxPendingRequests(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public CompletableFuture<PutMetricDataResponse> putMetricData(final PutMetricDataRequest putMetricDataRequest) {
+        putMetricDataRequests.increment();
+        return CompletableFuture.completedFuture(RESPONSE);
+    }
+
+    long getPutMetricDataRequests() {
+        return putMetricDataRequests.sum();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
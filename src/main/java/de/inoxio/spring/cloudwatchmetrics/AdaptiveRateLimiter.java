@@ -0,0 +1,72 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Token bucket whose rate follows additive increase, multiplicative decrease as in TCP congestion control:
+// throttling halves the rate, every successful request raises it a little until the maximum is reached again.
+final class AdaptiveRateLimiter {
+
+    static final double DEFAULT_MAX_REQUESTS_PER_SECOND = 150;
+
+    private static final double MIN_REQUESTS_PER_SECOND = 1;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_PER_SUCCESS = 1;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongSupplier nanoClock;
+    private double maxRate;
+    private double rate;
+    // one second worth of requests may be sent at once, negative when permits were handed out ahead of time
+    private double tokens;
+    private long refilledNanos;
+
+    AdaptiveRateLimiter() {
+        this(System::nanoTime);
+    }
+
+    AdaptiveRateLimiter(final LongSupplier nanoClock) {
+        notNull(nanoClock, "Nano clock must not be null!");
+        this.nanoClock = nanoClock;
+        this.refilledNanos = nanoClock.getAsLong();
+        setMaxRequestsPerSecond(DEFAULT_MAX_REQUESTS_PER_SECOND);
+        this.tokens = rate;
+    }
+
+    // takes the next permit and returns the nanos to wait until it may be used
+    synchronized long reserve() {
+        refill();
+        tokens--;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * NANOS_PER_SECOND);
+    }
+
+    synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + INCREASE_PER_SUCCESS);
+    }
+
+    synchronized void onThrottled() {
+        refill();
+        rate = Math.max(MIN_REQUESTS_PER_SECOND, rate * DECREASE_FACTOR);
+        // no more bursts until the lower rate has earned new permits
+        tokens = Math.min(tokens, 0);
+    }
+
+    private void refill() {
+        final var now = nanoClock.getAsLong();
+        tokens = Math.min(rate, tokens + (now - refilledNanos) / NANOS_PER_SECOND * rate);
+        refilledNanos = now;
+    }
+
+    synchronized double getRate() {
+        return rate;
+    }
+
+    synchronized void setMaxRequestsPerSecond(final double maxRequestsPerSecond) {
+        isTrue(maxRequestsPerSecond >= MIN_REQUESTS_PER_SECOND, "Max requests per second must be at least 1!");
+        this.maxRate = maxRequestsPerSecond;
+        this.rate = maxRequestsPerSecond;
+    }
+}
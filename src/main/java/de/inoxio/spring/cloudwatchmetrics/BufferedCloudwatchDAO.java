@@ -0,0 +1,311 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notEmpty;
+import static org.springframework.util.Assert.notNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import jakarta.annotation.PostConstruct;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+@Repository
+@ConditionalOnProperty(name = "aws.push-mode", havingValue = "buffered")
+public class BufferedCloudwatchDAO extends CloudwatchRestDAO implements CloudwatchMeters {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BufferedCloudwatchDAO.class);
+    static final String DROPPED_DATUMS_METRIC = "DroppedDatums";
+
+    // high resolution series get their own window, so their frequent flushes do not send the standard ones
+    private final MetricBuffer buffer = new MetricBuffer();
+    private final MetricBuffer highResolutionBuffer = new MetricBuffer(Duration.ofSeconds(1));
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flushScheduler;
+    private long flushedDroppedSeries;
+    private long flushedDroppedDatums;
+    private volatile double histogramRelativeError = MetricBuffer.DEFAULT_HISTOGRAM_RELATIVE_ERROR;
+
+    private Duration flushInterval = Duration.ofMinutes(1);
+    private Duration highResolutionFlushInterval = Duration.ofSeconds(1);
+
+    @Autowired
+    public BufferedCloudwatchDAO(final CloudWatchAsyncClient cloudWatchClient, final ObjectMapper objectMapper) {
+        super(cloudWatchClient, objectMapper);
+    }
+
+    @Override
+    public void pushMetrics(final List<DimensionKeyPair> metricDimensions, final MetricKeyPair... metrics) {
+        notEmpty(metrics, "Metrics should at least contain one metric!");
+        if (!isAccepting()) {
+            return;
+        }
+
+        for (final var metric : metrics) {
+            final var identity = metricIdentity(metric.getName(), metric.getUnit(), metricDimensions);
+            if (identity != null) {
+                bufferOf(identity).record(identity, metric.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void recordValue(final String name,
+                            final double value,
+                            final StandardUnit unit,
+                            final DimensionKeyPair... dimensions) {
+        notNull(unit, "Unit must not be null!");
+        if (!isAccepting()) {
+            return;
+        }
+        final var identity = metricIdentity(name, unit, Arrays.asList(dimensions));
+        if (identity != null) {
+            bufferOf(identity).record(identity, value, MetricAggregation.HISTOGRAM);
+        }
+    }
+
+    private MetricBuffer bufferOf(final MetricIdentity identity) {
+        return identity.isHighResolution() ? highResolutionBuffer : buffer;
+    }
+
+    @Override
+    public MetricCounter counter(final String name) {
+        return counter(name, StandardUnit.COUNT);
+    }
+
+    @Override
+    public MetricCounter counter(final String name, final StandardUnit unit) {
+        return registerMeter(name, MetricCounter.class, unit, MetricCounter::new);
+    }
+
+    @Override
+    public MetricGauge gauge(final String name) {
+        return gauge(name, StandardUnit.COUNT);
+    }
+
+    @Override
+    public MetricGauge gauge(final String name, final StandardUnit unit) {
+        return registerMeter(name, MetricGauge.class, unit, MetricGauge::new);
+    }
+
+    @Override
+    public MetricGauge gauge(final String name, final DoubleSupplier valueSupplier) {
+        return gauge(name, StandardUnit.COUNT, valueSupplier);
+    }
+
+    @Override
+    public MetricGauge gauge(final String name, final StandardUnit unit, final DoubleSupplier valueSupplier) {
+        notNull(valueSupplier, "Value supplier must not be null!");
+        return registerMeter(name,
+                             MetricGauge.class,
+                             unit,
+                             (metricName, meterUnit, highResolution) -> new MetricGauge(metricName,
+                                                                                        meterUnit,
+                                                                                        highResolution,
+                                                                                        valueSupplier));
+    }
+
+    @Override
+    public MetricTimer timer(final String name) {
+        return timer(name, StandardUnit.MILLISECONDS);
+    }
+
+    @Override
+    public MetricTimer timer(final String name, final StandardUnit unit) {
+        return timer(name, unit, MetricAggregation.STATISTIC_SET);
+    }
+
+    @Override
+    public MetricTimer timer(final String name, final StandardUnit unit, final MetricAggregation aggregation) {
+        notNull(aggregation, "Aggregation must not be null!");
+        final var timer = registerMeter(name,
+                                        MetricTimer.class,
+                                        unit,
+                                        (metricName, meterUnit, highResolution) -> newTimer(metricName,
+                                                                                            meterUnit,
+                                                                                            highResolution,
+                                                                                            aggregation));
+        if (timer.getAggregation() != aggregation) {
+            throw new IllegalArgumentException("Timer " + name + " is already registered with aggregation "
+                                               + timer.getAggregation() + "!");
+        }
+        return timer;
+    }
+
+    private MetricTimer newTimer(final String metricName,
+                                 final StandardUnit unit,
+                                 final boolean highResolution,
+                                 final MetricAggregation aggregation) {
+        return new MetricTimer(metricName, unit, highResolution, aggregation, histogramRelativeError);
+    }
+
+    private <T extends Meter> T registerMeter(final String name,
+                                              final Class<T> type,
+                                              final StandardUnit unit,
+                                              final MeterFactory<T> meterFactory) {
+        notNull(unit, "Unit must not be null!");
+        final var meter = meters.computeIfAbsent(name,
+                                                 key -> meterFactory.create(metricName(key),
+                                                                            unit,
+                                                                            isHighResolution(key)));
+        if (!type.isInstance(meter)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as "
+                                               + meter.getClass().getSimpleName() + "!");
+        }
+        if (meter.getUnit() != unit) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered with unit "
+                                               + meter.getUnit() + "!");
+        }
+        return type.cast(meter);
+    }
+
+    @PostConstruct
+    void startFlushing() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                                                                          .name("cloudwatch-metrics-flush")
+                                                                          .daemon()
+                                                                          .factory());
+        scheduleAligned(this::flush, flushInterval);
+        if (hasHighResolutionMetrics()) {
+            scheduleAligned(this::flushHighResolution, highResolutionFlushInterval);
+        }
+    }
+
+    // flushes run on period boundaries, so every window covers whole minutes or seconds of the wall clock
+    private void scheduleAligned(final Runnable flush, final Duration interval) {
+        final var period = interval.toMillis();
+        final var initialDelay = period - System.currentTimeMillis() % period;
+        flushScheduler.scheduleAtFixedRate(flush, initialDelay, period, TimeUnit.MILLISECONDS);
+    }
+
+    // the last flush also sends undelivered metrics, even when nothing was recorded since the previous one
+    @Override
+    void flushRemaining() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+        }
+        flush(true);
+    }
+
+    void flush() {
+        flush(false);
+    }
+
+    synchronized void flushHighResolution() {
+        try {
+            final var metricDatums = new ArrayList<MetricDatum>();
+            final var timestamp = highResolutionBuffer.drain(metricDatums);
+            addMeterDatums(true, timestamp, metricDatums);
+            if (!metricDatums.isEmpty()) {
+                putMetricData(metricDatums);
+            }
+        } catch (final RuntimeException e) {
+            LOG.error("Unable to flush buffered high resolution metrics!", e);
+        }
+    }
+
+    private synchronized void flush(final boolean last) {
+        try {
+            final var metricDatums = new ArrayList<MetricDatum>();
+            final var timestamp = buffer.drain(metricDatums);
+            countDroppedSeries();
+            countDroppedDatums();
+            addMeterDatums(false, timestamp, metricDatums);
+            if (last) {
+                // one final send for both windows
+                final var highResolutionTimestamp = highResolutionBuffer.drain(metricDatums);
+                addMeterDatums(true, highResolutionTimestamp, metricDatums);
+            }
+            if (last || !metricDatums.isEmpty()) {
+                LOG.debug("Flush {} buffered metrics to cloudwatch", metricDatums.size());
+                putMetricData(metricDatums);
+            }
+        } catch (final RuntimeException e) {
+            // keep the scheduler alive, the next flush gets another chance
+            LOG.error("Unable to flush buffered metrics!", e);
+        }
+    }
+
+    private void addMeterDatums(final boolean highResolution,
+                                final Instant timestamp,
+                                final List<MetricDatum> metricDatums) {
+        final var dimensions = getDimensions();
+        for (final var meter : meters.values()) {
+            if (meter.isHighResolution() == highResolution) {
+                meter.addMetricDatums(dimensions, timestamp, metricDatums);
+            }
+        }
+    }
+
+    // dropped series are counted on flush instead
+    @Override
+    void addDroppedSeries(final Instant timestamp, final List<MetricDatum> metricDatums) {
+    }
+
+    private void countDroppedSeries() {
+        final var droppedSeries = getDroppedSeries();
+        if (droppedSeries > flushedDroppedSeries) {
+            counter(DROPPED_SERIES_METRIC).increment(droppedSeries - flushedDroppedSeries);
+            flushedDroppedSeries = droppedSeries;
+        }
+    }
+
+    private void countDroppedDatums() {
+        final var droppedDatums = getDroppedDatums();
+        if (droppedDatums > flushedDroppedDatums) {
+            counter(DROPPED_DATUMS_METRIC).increment(droppedDatums - flushedDroppedDatums);
+            flushedDroppedDatums = droppedDatums;
+        }
+    }
+
+    @Value(value = "${aws.aggregation:values}")
+    void setAggregation(final MetricAggregation aggregation) {
+        buffer.setAggregation(aggregation);
+        highResolutionBuffer.setAggregation(aggregation);
+    }
+
+    @Value(value = "${aws.histogram-relative-error:" + MetricBuffer.DEFAULT_HISTOGRAM_RELATIVE_ERROR + "}")
+    void setHistogramRelativeError(final double histogramRelativeError) {
+        buffer.setHistogramRelativeError(histogramRelativeError);
+        highResolutionBuffer.setHistogramRelativeError(histogramRelativeError);
+        this.histogramRelativeError = histogramRelativeError;
+    }
+
+    // flushes are aligned to multiples of the interval in milliseconds
+    @Value(value = "${aws.flush-interval:PT1M}")
+    void setFlushInterval(final Duration flushInterval) {
+        notNull(flushInterval, "Flush interval must not be null!");
+        isTrue(flushInterval.toMillis() > 0, "Flush interval must be at least 1 ms!");
+        this.flushInterval = flushInterval;
+    }
+
+    @Value(value = "${aws.high-resolution-flush-interval:PT1S}")
+    void setHighResolutionFlushInterval(final Duration highResolutionFlushInterval) {
+        notNull(highResolutionFlushInterval, "High resolution flush interval must not be null!");
+        isTrue(highResolutionFlushInterval.toMillis() > 0, "High resolution flush interval must be at least 1 ms!");
+        this.highResolutionFlushInterval = highResolutionFlushInterval;
+    }
+
+    @FunctionalInterface
+    private interface MeterFactory<T extends Meter> {
+
+        T create(String metricName, StandardUnit unit, boolean highResolution);
+    }
+}
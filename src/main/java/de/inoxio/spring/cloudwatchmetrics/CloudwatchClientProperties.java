@@ -0,0 +1,93 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.hasText;
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.net.URI;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "aws.client")
+public class CloudwatchClientProperties {
+
+    static final String DEFAULT_REGION = "eu-central-1";
+
+    private String region = DEFAULT_REGION;
+    // e.g. a local mock server in tests
+    private URI endpointOverride;
+    private HttpClientType httpClient = HttpClientType.NETTY;
+    // unset values keep the defaults of the http client
+    private Integer maxConcurrency;
+    private Duration connectionAcquisitionTimeout;
+    private Duration readTimeout;
+    private Integer eventLoopThreads;
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(final String region) {
+        hasText(region, "Region must not be empty!");
+        this.region = region;
+    }
+
+    public URI getEndpointOverride() {
+        return endpointOverride;
+    }
+
+    public void setEndpointOverride(final URI endpointOverride) {
+        this.endpointOverride = endpointOverride;
+    }
+
+    public HttpClientType getHttpClient() {
+        return httpClient;
+    }
+
+    public void setHttpClient(final HttpClientType httpClient) {
+        notNull(httpClient, "Http client must not be null!");
+        this.httpClient = httpClient;
+    }
+
+    public Integer getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(final Integer maxConcurrency) {
+        isTrue(maxConcurrency == null || maxConcurrency > 0, "Max concurrency must be positive!");
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public Duration getConnectionAcquisitionTimeout() {
+        return connectionAcquisitionTimeout;
+    }
+
+    public void setConnectionAcquisitionTimeout(final Duration connectionAcquisitionTimeout) {
+        isTrue(connectionAcquisitionTimeout == null || connectionAcquisitionTimeout.isPositive(),
+               "Connection acquisition timeout must be positive!");
+        this.connectionAcquisitionTimeout = connectionAcquisitionTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(final Duration readTimeout) {
+        isTrue(readTimeout == null || readTimeout.isPositive(), "Read timeout must be positive!");
+        this.readTimeout = readTimeout;
+    }
+
+    public Integer getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public void setEventLoopThreads(final Integer eventLoopThreads) {
+        isTrue(eventLoopThreads == null || eventLoopThreads > 0, "Event loop threads must be positive!");
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public enum HttpClientType {
+        NETTY,
+        CRT
+    }
+}
@@ -3,11 +3,16 @@ package de.inoxio.spring.cloudwatchmetrics;
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
 import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
 
-import static software.amazon.awssdk.regions.Region.EU_CENTRAL_1;
-
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatterBuilder;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
@@ -16,14 +21,56 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.deser.InstantDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
 
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
 
 @Configuration
+@EnableConfigurationProperties(CloudwatchClientProperties.class)
 public class CloudwatchConfig {
 
+    static final String HTTP_CLIENT_BEAN = "cloudWatchHttpClient";
+
+    // the http client is a bean of its own and closed by spring, the sdk does not close clients it did not build
     @Bean
-    public CloudWatchAsyncClient cloudWatchClient() {
-        return CloudWatchAsyncClient.builder().region(EU_CENTRAL_1).build();
+    public CloudWatchAsyncClient cloudWatchClient(final CloudwatchClientProperties clientProperties,
+                                                  @Qualifier(HTTP_CLIENT_BEAN) final SdkAsyncHttpClient httpClient) {
+        final var builder = CloudWatchAsyncClient.builder()
+                                                 .region(Region.of(clientProperties.getRegion()))
+                                                 .httpClient(httpClient);
+        if (clientProperties.getEndpointOverride() != null) {
+            builder.endpointOverride(clientProperties.getEndpointOverride());
+        }
+        return builder.build();
+    }
+
+    // an SdkEventLoopGroup bean is shared with other sdk clients of the app instead of starting threads of our own
+    @Bean(name = HTTP_CLIENT_BEAN)
+    @ConditionalOnMissingBean(name = HTTP_CLIENT_BEAN)
+    @ConditionalOnProperty(name = "aws.client.http-client", havingValue = "netty", matchIfMissing = true)
+    public SdkAsyncHttpClient nettyHttpClient(final CloudwatchClientProperties clientProperties,
+                                              final ObjectProvider<SdkEventLoopGroup> eventLoopGroup) {
+        final var builder = NettyNioAsyncHttpClient.builder();
+        if (clientProperties.getMaxConcurrency() != null) {
+            builder.maxConcurrency(clientProperties.getMaxConcurrency());
+        }
+        if (clientProperties.getConnectionAcquisitionTimeout() != null) {
+            builder.connectionAcquisitionTimeout(clientProperties.getConnectionAcquisitionTimeout());
+        }
+        if (clientProperties.getReadTimeout() != null) {
+            builder.readTimeout(clientProperties.getReadTimeout());
+        }
+        final var sharedEventLoopGroup = eventLoopGroup.getIfUnique();
+        if (sharedEventLoopGroup != null) {
+            builder.eventLoopGroup(sharedEventLoopGroup);
+        } else if (clientProperties.getEventLoopThreads() != null) {
+            builder.eventLoopGroupBuilder(SdkEventLoopGroup.builder()
+                                                           .numberOfThreads(clientProperties.getEventLoopThreads()));
+        }
+        return builder.build();
     }
 
     @Bean
@@ -41,4 +88,38 @@ public class CloudwatchConfig {
                                           .featuresToDisable(WRITE_DATES_AS_TIMESTAMPS);
 
     }
-}
\ No newline at end of file
+
+    // aws-crt-client is optional, it has a native event loop and no read timeout
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient")
+    @ConditionalOnProperty(name = "aws.client.http-client", havingValue = "crt")
+    static class CrtHttpClientConfig {
+
+        @Bean(name = HTTP_CLIENT_BEAN)
+        @ConditionalOnMissingBean(name = HTTP_CLIENT_BEAN)
+        SdkAsyncHttpClient crtHttpClient(final CloudwatchClientProperties clientProperties) {
+            final var builder = AwsCrtAsyncHttpClient.builder();
+            if (clientProperties.getMaxConcurrency() != null) {
+                builder.maxConcurrency(clientProperties.getMaxConcurrency());
+            }
+            if (clientProperties.getConnectionAcquisitionTimeout() != null) {
+                builder.connectionAcquisitionTimeout(clientProperties.getConnectionAcquisitionTimeout());
+            }
+            return builder.build();
+        }
+    }
+
+    // without aws-crt-client startup would otherwise fail with an unrelated missing bean error
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnMissingClass("software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient")
+    @ConditionalOnProperty(name = "aws.client.http-client", havingValue = "crt")
+    static class MissingCrtHttpClientConfig {
+
+        @Bean(name = HTTP_CLIENT_BEAN)
+        @ConditionalOnMissingBean(name = HTTP_CLIENT_BEAN)
+        SdkAsyncHttpClient crtHttpClient() {
+            throw new IllegalStateException("aws.client.http-client=crt needs software.amazon.awssdk:aws-crt-client "
+                                            + "on the classpath!");
+        }
+    }
+}
@@ -1,8 +1,43 @@
 package de.inoxio.spring.cloudwatchmetrics;
 
+import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
 public interface CloudwatchDAO {
 
     void addDimension(DimensionKeyPair... dimensions);
 
+    // the methods below were added after 2.0, the defaults keep implementations written against it working
+
+    default void replaceDimension(final DimensionKeyPair... dimensions) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot replace dimensions!");
+    }
+
+    default void removeDimension(final String... names) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot remove dimensions!");
+    }
+
     void pushMetrics(MetricKeyPair... metrics);
+
+    // the given dimensions are added to the global ones, replacing global dimensions with the same name
+    default void pushMetrics(final List<DimensionKeyPair> dimensions, final MetricKeyPair... metrics) {
+        if (!dimensions.isEmpty()) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot push metric dimensions!");
+        }
+        pushMetrics(metrics);
+    }
+
+    default void recordValue(final String name, final double value, final DimensionKeyPair... dimensions) {
+        recordValue(name, value, StandardUnit.COUNT, dimensions);
+    }
+
+    default void recordValue(final String name,
+                             final double value,
+                             final StandardUnit unit,
+                             final DimensionKeyPair... dimensions) {
+        pushMetrics(Arrays.asList(dimensions), metricKeyPairBuilder().name(name).value(value).unit(unit).build());
+    }
 }
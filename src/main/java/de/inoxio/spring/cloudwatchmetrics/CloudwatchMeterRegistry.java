@@ -0,0 +1,162 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
+import static org.springframework.util.Assert.notNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.step.StepRegistryConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+// publishes micrometer meters through the DAO, so they share its prefix, dimensions, namespace and sender
+public final class CloudwatchMeterRegistry extends StepMeterRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CloudwatchMeterRegistry.class);
+
+    private final CloudwatchRestDAO cloudwatchRestDAO;
+
+    public CloudwatchMeterRegistry(final StepRegistryConfig config,
+                                   final CloudwatchRestDAO cloudwatchRestDAO,
+                                   final Clock clock) {
+        super(config, clock);
+        notNull(cloudwatchRestDAO, "CloudwatchRestDAO must not be null!");
+        this.cloudwatchRestDAO = cloudwatchRestDAO;
+        // meter names are only prefixed, like every other metric of the DAO
+        config().namingConvention(NamingConvention.identity);
+    }
+
+    @Override
+    protected void publish() {
+        final var timestamp = Instant.ofEpochMilli(clock.wallTime());
+        final var metricDatums = new ArrayList<MetricDatum>();
+        for (final var meter : getMeters()) {
+            final var datums = new MeterDatums(meter.getId(), timestamp, metricDatums);
+            meter.use(gauge -> datums.add("", gauge.value(), datums.baseUnit()),
+                      counter -> datums.add("", counter.count(), StandardUnit.COUNT),
+                      timer -> {
+                          datums.add(".count", timer.count(), StandardUnit.COUNT);
+                          datums.add(".sum", timer.totalTime(getBaseTimeUnit()), StandardUnit.MILLISECONDS);
+                          datums.add(".avg", timer.mean(getBaseTimeUnit()), StandardUnit.MILLISECONDS);
+                          datums.add(".max", timer.max(getBaseTimeUnit()), StandardUnit.MILLISECONDS);
+                      },
+                      summary -> {
+                          datums.add(".count", summary.count(), StandardUnit.COUNT);
+                          datums.add(".sum", summary.totalAmount(), datums.baseUnit());
+                          datums.add(".avg", summary.mean(), datums.baseUnit());
+                          datums.add(".max", summary.max(), datums.baseUnit());
+                      },
+                      longTaskTimer -> {
+                          datums.add(".active", longTaskTimer.activeTasks(), StandardUnit.COUNT);
+                          datums.add(".duration", longTaskTimer.duration(getBaseTimeUnit()), StandardUnit.MILLISECONDS);
+                      },
+                      timeGauge -> datums.add("", timeGauge.value(getBaseTimeUnit()), StandardUnit.MILLISECONDS),
+                      functionCounter -> datums.add("", functionCounter.count(), StandardUnit.COUNT),
+                      functionTimer -> {
+                          datums.add(".count", functionTimer.count(), StandardUnit.COUNT);
+                          datums.add(".sum", functionTimer.totalTime(getBaseTimeUnit()), StandardUnit.MILLISECONDS);
+                          datums.add(".avg", functionTimer.mean(getBaseTimeUnit()), StandardUnit.MILLISECONDS);
+                      },
+                      other -> other.measure()
+                                    .forEach(measurement -> datums.add("." + measurement.getStatistic()
+                                                                                         .getTagValueRepresentation(),
+                                                                       measurement.getValue(),
+                                                                       datums.baseUnit())));
+        }
+        cloudwatchRestDAO.addDroppedSeries(timestamp, metricDatums);
+        if (metricDatums.isEmpty()) {
+            return;
+        }
+
+        LOG.debug("Publish {} micrometer metrics to cloudwatch", metricDatums.size());
+        cloudwatchRestDAO.putMetricData(metricDatums);
+    }
+
+    // only the step is configurable, everything else keeps the micrometer defaults
+    static StepRegistryConfig stepRegistryConfig(final Duration step) {
+        notNull(step, "Step must not be null!");
+        return new StepRegistryConfig() {
+
+            @Override
+            public String prefix() {
+                return "aws.micrometer";
+            }
+
+            @Override
+            public String get(final String key) {
+                return null;
+            }
+
+            @Override
+            public Duration step() {
+                return step;
+            }
+        };
+    }
+
+    @Override
+    protected TimeUnit getBaseTimeUnit() {
+        return TimeUnit.MILLISECONDS;
+    }
+
+    // the base units micrometer binders use, everything else is counted
+    static StandardUnit standardUnit(final String baseUnit) {
+        if (baseUnit == null) {
+            return StandardUnit.COUNT;
+        }
+        return switch (baseUnit) {
+            case "bytes" -> StandardUnit.BYTES;
+            case "seconds" -> StandardUnit.SECONDS;
+            case "milliseconds" -> StandardUnit.MILLISECONDS;
+            case "percent" -> StandardUnit.PERCENT;
+            default -> StandardUnit.COUNT;
+        };
+    }
+
+    // converts the measurements of one meter, tags become dimensions replacing global ones with the same name
+    // and count against the series limit of the DAO like the dimensions of any other metric
+    private final class MeterDatums {
+
+        private final Meter.Id id;
+        private final String metricName;
+        private final List<DimensionKeyPair> tags;
+        private final Instant timestamp;
+        private final List<MetricDatum> metricDatums;
+
+        MeterDatums(final Meter.Id id, final Instant timestamp, final List<MetricDatum> metricDatums) {
+            this.id = id;
+            this.metricName = getConventionName(id);
+            this.tags = getConventionTags(id).stream()
+                                             .map(tag -> dimensionKeyPairBuilder().name(tag.getKey())
+                                                                                  .value(tag.getValue())
+                                                                                  .build())
+                                             .toList();
+            this.timestamp = timestamp;
+            this.metricDatums = metricDatums;
+        }
+
+        StandardUnit baseUnit() {
+            return standardUnit(id.getBaseUnit());
+        }
+
+        // cloudwatch rejects values that are not finite, e.g. gauges of collected objects
+        void add(final String suffix, final double value, final StandardUnit unit) {
+            if (!Double.isFinite(value)) {
+                return;
+            }
+            final var identity = cloudwatchRestDAO.metricIdentity(metricName + suffix, unit, tags);
+            if (identity != null) {
+                metricDatums.add(identity.metricDatumBuilder(timestamp).value(value).build());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.util.function.DoubleSupplier;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+public interface CloudwatchMeters {
+
+    MetricCounter counter(String name);
+
+    MetricCounter counter(String name, StandardUnit unit);
+
+    MetricGauge gauge(String name);
+
+    MetricGauge gauge(String name, StandardUnit unit);
+
+    MetricGauge gauge(String name, DoubleSupplier valueSupplier);
+
+    MetricGauge gauge(String name, StandardUnit unit, DoubleSupplier valueSupplier);
+
+    MetricTimer timer(String name);
+
+    // the unit samples are converted into, one of seconds, milliseconds or microseconds
+    MetricTimer timer(String name, StandardUnit unit);
+
+    // histogram timers keep percentiles queryable, statistic set timers only minimum, maximum, sum and count
+    MetricTimer timer(String name, StandardUnit unit, MetricAggregation aggregation);
+}
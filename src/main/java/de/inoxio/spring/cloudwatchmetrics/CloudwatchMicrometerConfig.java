@@ -0,0 +1,63 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Duration;
+import io.micrometer.core.instrument.Clock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnProperty(name = "aws.micrometer.enabled", havingValue = "true")
+public class CloudwatchMicrometerConfig {
+
+    @Bean
+    public CloudwatchMeterRegistry cloudwatchMeterRegistry(final CloudwatchRestDAO cloudwatchRestDAO,
+                                                           @Value(value = "${aws.micrometer.step:PT1M}")
+                                                           final Duration step) {
+        return new CloudwatchMeterRegistry(CloudwatchMeterRegistry.stepRegistryConfig(step),
+                                           cloudwatchRestDAO,
+                                           Clock.SYSTEM);
+    }
+
+    @Bean
+    public MeterRegistryLifecycle cloudwatchMeterRegistryLifecycle(final CloudwatchMeterRegistry registry) {
+        return new MeterRegistryLifecycle(registry);
+    }
+
+    // publishing starts with the context and the last step is published before the DAO stops sending
+    static final class MeterRegistryLifecycle implements SmartLifecycle {
+
+        private final CloudwatchMeterRegistry registry;
+        private volatile boolean running;
+
+        MeterRegistryLifecycle(final CloudwatchMeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void start() {
+            registry.start(Thread.ofPlatform().name("cloudwatch-micrometer-publish").daemon().factory());
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+            registry.close();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public int getPhase() {
+            return CloudwatchRestDAO.LIFECYCLE_PHASE + 1;
+        }
+    }
+}
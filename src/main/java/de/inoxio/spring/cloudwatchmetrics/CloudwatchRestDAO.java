@@ -1,48 +1,105 @@
 package de.inoxio.spring.cloudwatchmetrics;
 
+import static org.springframework.util.Assert.isTrue;
 import static org.springframework.util.Assert.notEmpty;
 import static org.springframework.util.Assert.notNull;
 
 import java.io.IOException;
-import java.time.ZonedDateTime;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
 import jakarta.annotation.PostConstruct;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.DashboardEntry;
 import software.amazon.awssdk.services.cloudwatch.model.DashboardValidationMessage;
 import software.amazon.awssdk.services.cloudwatch.model.Dimension;
 import software.amazon.awssdk.services.cloudwatch.model.GetDashboardRequest;
 import software.amazon.awssdk.services.cloudwatch.model.GetDashboardResponse;
+import software.amazon.awssdk.services.cloudwatch.model.ListDashboardsRequest;
 import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
 import software.amazon.awssdk.services.cloudwatch.model.PutDashboardRequest;
 import software.amazon.awssdk.services.cloudwatch.model.PutDashboardResponse;
-import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
 import software.amazon.awssdk.services.cloudwatch.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
 
 @Repository
-public class CloudwatchRestDAO implements CloudwatchDAO {
+@ConditionalOnProperty(name = "aws.push-mode", havingValue = "direct", matchIfMissing = true)
+public class CloudwatchRestDAO implements CloudwatchDAO, SmartLifecycle {
+
+    // stops after the web server, so requests still served during its graceful shutdown are recorded
+    static final int LIFECYCLE_PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    static final String DROPPED_SERIES_METRIC = "DroppedSeries";
 
     private static final Logger LOG = LoggerFactory.getLogger(CloudwatchRestDAO.class);
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+    private static final int DEFAULT_ANNOTATION_MAX_RETRIES = 3;
+    private static final int DEFAULT_DASHBOARD_PARALLELISM = 4;
 
     private final CloudWatchAsyncClient cloudWatchClient;
     private final ObjectMapper objectMapper;
-    private final List<Dimension> dimensions = new ArrayList<>();
+    private final PutMetricDataSender putMetricDataSender;
+    private volatile MetricTransport transport;
+    // immutable snapshot, replaced as a whole on every change so pushing threads never see a half updated list
+    private final AtomicReference<List<Dimension>> dimensions = new AtomicReference<>(List.of());
+    private final MetricIdentityCache metricIdentities = new MetricIdentityCache();
+    private final AtomicLong sentDroppedSeries = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean accepting = true;
 
-    @Value(value = "${aws.dashboard-name:#{null}}")
-    private String dashboardName;
+    private List<String> dashboardNames = List.of();
+    private Pattern dashboardPattern;
+    private String dashboardNamePrefix;
+    private int dashboardParallelism = DEFAULT_DASHBOARD_PARALLELISM;
+    private List<String> dashboardMetricPrefixes = List.of();
+    private List<String> dashboardNamespaces = List.of();
+    private Map<String, String> dashboardDimensions = Map.of();
+    private volatile DashboardMetricMatcher metricMatcher;
+    // annotations still running, stop waits for them before the client goes away
+    private final Set<CompletableFuture<Void>> pendingAnnotations = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService annotationScheduler;
+    private String deployId;
+    private Duration annotationDebounce = Duration.ZERO;
+    private int annotationMaxRetries = DEFAULT_ANNOTATION_MAX_RETRIES;
+    private int annotationMaxCount = Integer.MAX_VALUE;
+    private Duration annotationMaxAge;
+    private Duration annotationMergeGap;
     @Value(value = "${aws.metric-prefix}")
     private String metricPrefix;
     @Value(value = "${aws.namespace}")
     private String namespace;
+    @Value(value = "${aws.shutdown-timeout:PT10S}")
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+    private Duration spoolReplayInterval = Duration.ofMinutes(1);
 
     @Autowired
     public CloudwatchRestDAO(final CloudWatchAsyncClient cloudWatchClient, final ObjectMapper objectMapper) {
@@ -50,108 +107,388 @@ public class CloudwatchRestDAO implements CloudwatchDAO {
         this.cloudWatchClient = cloudWatchClient;
         notNull(objectMapper, "ObjectMapper must not be null!");
         this.objectMapper = objectMapper;
+        this.putMetricDataSender = new PutMetricDataSender(cloudWatchClient, DEFAULT_MAX_CONCURRENT_REQUESTS);
+        this.transport = putMetricDataSender;
     }
 
     @Override
     public void addDimension(final DimensionKeyPair... dimensionKeyPairs) {
-        Arrays.stream(dimensionKeyPairs)
-              .map(dimensionKeyPair -> Dimension.builder()
-                                                .name(dimensionKeyPair.getName())
-                                                .value(dimensionKeyPair.getValue())
-                                                .build())
-              .forEach(dimensions::add);
+        final var added = toDimensions(dimensionKeyPairs);
+        dimensions.updateAndGet(current -> {
+            final var updated = new ArrayList<>(current);
+            updated.addAll(added);
+            return List.copyOf(updated);
+        });
+    }
+
+    @Override
+    public void replaceDimension(final DimensionKeyPair... dimensionKeyPairs) {
+        final var replacements = toDimensions(dimensionKeyPairs);
+        dimensions.updateAndGet(current -> {
+            final var updated = new ArrayList<>(current);
+            for (final var replacement : replacements) {
+                updated.replaceAll(dimension -> dimension.name().equals(replacement.name()) ? replacement : dimension);
+                if (!updated.contains(replacement)) {
+                    updated.add(replacement);
+                }
+            }
+            return List.copyOf(updated);
+        });
+    }
+
+    @Override
+    public void removeDimension(final String... names) {
+        final var removed = Set.of(names);
+        dimensions.updateAndGet(current -> List.copyOf(current.stream()
+                                                              .filter(dimension -> !removed.contains(dimension.name()))
+                                                              .toList()));
+    }
+
+    private static List<Dimension> toDimensions(final DimensionKeyPair... dimensionKeyPairs) {
+        return Arrays.stream(dimensionKeyPairs)
+                     .map(dimensionKeyPair -> Dimension.builder()
+                                                       .name(dimensionKeyPair.getName())
+                                                       .value(dimensionKeyPair.getValue())
+                                                       .build())
+                     .toList();
     }
 
     @Override
     public void pushMetrics(final MetricKeyPair... metrics) {
-        notEmpty(metrics, "Metrics should at least contain one metric!");
+        pushMetrics(List.of(), metrics);
+    }
 
-        final var metricDatums = Arrays.stream(metrics)
-                .map(metric -> MetricDatum.builder()
-                          .metricName(metricPrefix + metric.getName())
-                          .unit(StandardUnit.COUNT)
-                          .value(metric.getValue())
-                          .dimensions(dimensions)
-                          .build())
-                .toList();
+    @Override
+    public void pushMetrics(final List<DimensionKeyPair> metricDimensions, final MetricKeyPair... metrics) {
+        notEmpty(metrics, "Metrics should at least contain one metric!");
+        if (!accepting) {
+            LOG.debug("Shutting down, ignore metrics: {}", (Object) metrics);
+            return;
+        }
 
-        final var request = PutMetricDataRequest.builder().namespace(namespace).metricData(metricDatums).build();
+        // stamped now, so a queued or retried request still lands in the period it was recorded in
+        final var timestamp = Instant.now();
+        final var metricDatums = new ArrayList<MetricDatum>(metrics.length);
+        for (final var metric : metrics) {
+            final var identity = metricIdentity(metric.getName(), metric.getUnit(), metricDimensions);
+            if (identity != null) {
+                metricDatums.add(identity.metricDatumBuilder(timestamp).value(metric.getValue()).build());
+            }
+        }
+        if (metricDatums.size() < metrics.length) {
+            addDroppedSeries(timestamp, metricDatums);
+        }
+        if (metricDatums.isEmpty()) {
+            return;
+        }
 
         LOG.info("Push metrics to cloudwatch: {}", (Object) metrics);
-        cloudWatchClient.putMetricData(request)
-                        .whenComplete((putMetricDataResponse, throwable) -> checkAndThrowError(throwable));
+        putMetricData(metricDatums);
+    }
+
+    // there is no flush in direct mode, newly dropped series are sent along with the push that dropped them
+    void addDroppedSeries(final Instant timestamp, final List<MetricDatum> metricDatums) {
+        final var droppedSeries = getDroppedSeries();
+        final var sent = sentDroppedSeries.getAndAccumulate(droppedSeries, Math::max);
+        if (droppedSeries > sent) {
+            metricDatums.add(MetricIdentity.metricDatumBuilder(metricName(DROPPED_SERIES_METRIC),
+                                                               dimensions.get(),
+                                                               StandardUnit.COUNT,
+                                                               false,
+                                                               timestamp)
+                                           .value((double) (droppedSeries - sent))
+                                           .build());
+        }
+    }
+
+    // null when the series would exceed the cardinality limit
+    MetricIdentity metricIdentity(final String name,
+                                  final StandardUnit unit,
+                                  final List<DimensionKeyPair> metricDimensions) {
+        return metricIdentities.get(metricPrefix, name, dimensions.get(), metricDimensions, unit);
+    }
+
+    boolean isHighResolution(final String name) {
+        return metricIdentities.isHighResolution(name);
+    }
+
+    boolean hasHighResolutionMetrics() {
+        return metricIdentities.hasHighResolutionMetrics();
+    }
+
+    long getDroppedSeries() {
+        return metricIdentities.getDroppedSeries();
+    }
+
+    long getDroppedDatums() {
+        return transport.getDroppedDatums();
+    }
+
+    CompletableFuture<Void> putMetricData(final List<MetricDatum> metricDatums) {
+        return transport.send(namespace, metricDatums);
+    }
+
+    String getNamespace() {
+        return namespace;
+    }
+
+    String metricName(final String name) {
+        return metricPrefix + name;
+    }
+
+    List<Dimension> getDimensions() {
+        return dimensions.get();
+    }
+
+    @Override
+    public void start() {
+        putMetricDataSender.startReplay(spoolReplayInterval);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        final var deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        stopAnnotations(deadline);
+        flushRemaining();
+        if (!transport.close(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())))) {
+            LOG.warn("Metrics not sent within {}, they are lost unless spooled!", shutdownTimeout);
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LIFECYCLE_PHASE;
+    }
+
+    // a debounced annotation that did not start yet is skipped, running ones get until the deadline to finish
+    private void stopAnnotations(final long deadline) {
+        try {
+            if (annotationScheduler != null) {
+                annotationScheduler.shutdownNow();
+                annotationScheduler.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            CompletableFuture.allOf(pendingAnnotations.toArray(CompletableFuture[]::new))
+                             .get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException | TimeoutException e) {
+            LOG.warn("Dashboard annotations not finished within {}!", shutdownTimeout);
+        }
+    }
+
+    // sends what is still waiting in memory, merged into as few requests as possible
+    void flushRemaining() {
+        putMetricData(List.of());
+    }
+
+    boolean isAccepting() {
+        return accepting;
     }
 
     @PostConstruct
     void annotateServerStart() {
-        if (dashboardName != null && !dashboardName.isEmpty()) {
-            final var dashboardRequest = GetDashboardRequest.builder().dashboardName(dashboardName).build();
+        if (dashboardNames.isEmpty() && dashboardPattern == null) {
+            return;
+        }
+        if (deployId != null && annotationDebounce.isPositive()) {
+            // instances of a rollout start at about the same time, spread over the window the first one annotates
+            // the deploy and the others find its annotation
+            final var delay = ThreadLocalRandom.current().nextLong(annotationDebounce.toMillis() + 1);
+            final var threadFactory = Thread.ofPlatform().name("cloudwatch-metrics-annotation").daemon().factory();
+            annotationScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            annotationScheduler.schedule(this::trackAnnotation, delay, TimeUnit.MILLISECONDS);
+            // a single annotation per start, the thread is not needed afterwards
+            annotationScheduler.shutdown();
+        } else {
+            trackAnnotation();
+        }
+    }
+
+    private void trackAnnotation() {
+        final var annotation = annotateDashboards();
+        pendingAnnotations.add(annotation);
+        annotation.whenComplete((ignored, throwable) -> pendingAnnotations.remove(annotation));
+    }
+
+    // the named dashboards and those matching the pattern, at most dashboard-parallelism of them at the same time
+    CompletableFuture<Void> annotateDashboards() {
+        return resolveDashboardNames().thenCompose(names -> {
+            final var remainingNames = new ConcurrentLinkedQueue<>(names);
+            final var workers = new ArrayList<CompletableFuture<Void>>();
+            for (var i = 0; i < Math.min(dashboardParallelism, names.size()); i++) {
+                workers.add(annotateNextDashboard(remainingNames));
+            }
+            return CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new));
+        }).exceptionally(throwable -> {
+            LOG.error("Unable to list dashboards!", throwable);
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> annotateNextDashboard(final Queue<String> remainingNames) {
+        final var dashboardName = remainingNames.poll();
+        if (dashboardName == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // a failing dashboard does not stop the others
+        return annotateDashboard(dashboardName).exceptionally(throwable -> {
+            LOG.error("Unable to annotate dashboard {}!", dashboardName, throwable);
+            return null;
+        }).thenCompose(ignored -> annotateNextDashboard(remainingNames));
+    }
 
-            cloudWatchClient.getDashboard(dashboardRequest)
-                            .thenApply(GetDashboardResponse::dashboardBody)
-                            .whenComplete(this::handleGetDashboard);
+    CompletableFuture<Void> annotateDashboard(final String dashboardName) {
+        return getDashboardBody(dashboardName).handle((widgets, throwable) -> handleGetDashboard(dashboardName,
+                                                                                                 widgets,
+                                                                                                 throwable))
+                                              .thenCompose(Function.identity());
+    }
+
+    CompletableFuture<List<String>> resolveDashboardNames() {
+        if (dashboardPattern == null) {
+            return CompletableFuture.completedFuture(dashboardNames);
         }
+        return listDashboardNames(null, new ArrayList<>(dashboardNames)).thenApply(names -> names.stream()
+                                                                                                 .distinct()
+                                                                                                 .toList());
     }
 
-    void handleGetDashboard(final String widgets, final Throwable throwable) {
+    // ListDashboards only filters by prefix, the rest of the pattern is matched here, page by page
+    private CompletableFuture<List<String>> listDashboardNames(final String nextToken, final List<String> names) {
+        final var listDashboardsRequest = ListDashboardsRequest.builder()
+                                                               .dashboardNamePrefix(dashboardNamePrefix)
+                                                               .nextToken(nextToken)
+                                                               .build();
+
+        return cloudWatchClient.listDashboards(listDashboardsRequest).thenCompose(response -> {
+            response.dashboardEntries()
+                    .stream()
+                    .map(DashboardEntry::dashboardName)
+                    .filter(name -> dashboardPattern.matcher(name).matches())
+                    .forEach(names::add);
+            return response.nextToken() == null
+                   ? CompletableFuture.completedFuture(names)
+                   : listDashboardNames(response.nextToken(), names);
+        });
+    }
+
+    CompletableFuture<String> getDashboardBody(final String dashboardName) {
+        final var dashboardRequest = GetDashboardRequest.builder().dashboardName(dashboardName).build();
+
+        return cloudWatchClient.getDashboard(dashboardRequest).thenApply(GetDashboardResponse::dashboardBody);
+    }
+
+    CompletableFuture<Void> handleGetDashboard(final String dashboardName,
+                                               final String widgets,
+                                               final Throwable throwable) {
         // log a warning when dashboard was not found
         if (throwable != null && throwable.getCause() instanceof final ResourceNotFoundException cause) {
             LOG.warn(cause.awsErrorDetails().errorMessage());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         checkAndThrowError(throwable);
 
-        final var annotatedWidgets = annotateWidgets(widgets);
-        if (annotatedWidgets != null && annotatedWidgets.length() != widgets.length()) {
-            updateChangedDashboard(annotatedWidgets);
+        final var annotated = annotateWidgets(widgets);
+        // an unchanged body is not written again
+        if (annotated == null || !annotated.modified()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (deployId == null) {
+            return updateChangedDashboard(dashboardName, annotated.body());
         }
+        return compareAndUpdateDashboard(dashboardName, widgets, annotated.body(), annotationMaxRetries);
+    }
+
+    // cloudwatch has no conditional PutDashboard, so the body is read again right before writing it and annotated
+    // anew when another instance changed it in between
+    CompletableFuture<Void> compareAndUpdateDashboard(final String dashboardName,
+                                                      final String widgets,
+                                                      final String annotatedWidgets,
+                                                      final int retries) {
+        return getDashboardBody(dashboardName).handle((currentWidgets, throwable) -> {
+            checkAndThrowError(throwable);
+            if (widgets.equals(currentWidgets)) {
+                return updateChangedDashboard(dashboardName, annotatedWidgets);
+            }
+            final var reannotated = annotateWidgets(currentWidgets);
+            if (reannotated == null) {
+                LOG.warn("Dashboard {} changed to an invalid body, deploy {} is not annotated",
+                         dashboardName,
+                         deployId);
+            } else if (!reannotated.modified()) {
+                LOG.info("Deploy {} is already annotated on dashboard {}", deployId, dashboardName);
+            } else if (retries > 0) {
+                return compareAndUpdateDashboard(dashboardName, currentWidgets, reannotated.body(), retries - 1);
+            } else {
+                LOG.warn("Dashboard {} changed on every attempt, deploy {} is not annotated", dashboardName, deployId);
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(Function.identity());
     }
 
-    void updateChangedDashboard(final String annotatedWidgets) {
+    CompletableFuture<Void> updateChangedDashboard(final String dashboardName, final String annotatedWidgets) {
         final var putDashboardRequest = PutDashboardRequest.builder().dashboardName(dashboardName)
                                                            .dashboardBody(annotatedWidgets)
                                                            .build();
 
-        cloudWatchClient.putDashboard(putDashboardRequest)
-                        .thenApply(PutDashboardResponse::dashboardValidationMessages)
-                        .whenComplete(this::handlePutDashboard);
+        return cloudWatchClient.putDashboard(putDashboardRequest)
+                               .thenApply(PutDashboardResponse::dashboardValidationMessages)
+                               .handle((dashboardValidationMessages, throwable) -> {
+                                   handlePutDashboard(dashboardName, dashboardValidationMessages, throwable);
+                                   return null;
+                               });
     }
 
-    void handlePutDashboard(final List<DashboardValidationMessage> dashboardValidationMessages, final Throwable throwable) {
+    void handlePutDashboard(final String dashboardName,
+                            final List<DashboardValidationMessage> dashboardValidationMessages,
+                            final Throwable throwable) {
         checkAndThrowError(throwable);
-        LOG.info("Dashboard annotated");
+        LOG.info("Dashboard {} annotated", dashboardName);
         dashboardValidationMessages.forEach(message -> LOG.info("BUT: {}", message.message()));
     }
 
-    String annotateWidgets(final String json) {
+    // null when the dashboard body is no valid JSON
+    DashboardAnnotator.Annotated annotateWidgets(final String json) {
         try {
-            final var widgets = objectMapper.readValue(json, WidgetsDTO.class);
-
-            if (widgets == null) {
-                return json;
-            } else {
-                widgets.getWidgets().stream().filter(filterWidgets()).forEach(this::addAnnotationToWidget);
+            final var retention = new DashboardAnnotator.Retention(annotationMaxCount,
+                                                                   annotationMaxAge,
+                                                                   annotationMergeGap);
+            final var dashboardAnnotator = new DashboardAnnotator(objectMapper.getFactory(),
+                                                                  metricPrefix,
+                                                                  metricMatcher(),
+                                                                  retention);
+            final var label = metricPrefix + DashboardAnnotator.START_LABEL;
+            if (deployId == null) {
+                return dashboardAnnotator.annotate(json, label, Instant.now());
             }
-
-            return objectMapper.writeValueAsString(widgets);
+            // one annotation per deploy, however many instances start
+            return dashboardAnnotator.annotateOnce(json, label + " " + deployId, Instant.now());
         } catch (final IOException e) {
-            LOG.error("Unable to transform JSON to PoJo", e);
+            LOG.error("Unable to annotate dashboard", e);
             return null;
         }
     }
 
-    void addAnnotationToWidget(final WidgetDTO widget) {
-        final var annotation = new AnnotationDTO();
-        annotation.setLabel(metricPrefix + " Start");
-        annotation.setValue(ZonedDateTime.now());
-        widget.getProperties().createOrGetAnnotations().createOrGetVertical().add(annotation);
-    }
-
-    Predicate<WidgetDTO> filterWidgets() {
-        return widget -> widget.getProperties()
-                               .getMetrics()
-                               .stream()
-                               .anyMatch(metric -> metric.getMetricName().startsWith(metricPrefix));
+    // built once, the metric prefix is only known after injection
+    private DashboardMetricMatcher metricMatcher() {
+        var matcher = metricMatcher;
+        if (matcher == null) {
+            matcher = new DashboardMetricMatcher(dashboardMetricPrefixes.isEmpty()
+                                                 ? List.of(metricPrefix)
+                                                 : dashboardMetricPrefixes,
+                                                 dashboardNamespaces,
+                                                 dashboardDimensions);
+            metricMatcher = matcher;
+        }
+        return matcher;
     }
 
     void checkAndThrowError(final Throwable throwable) {
@@ -162,7 +499,196 @@ public class CloudwatchRestDAO implements CloudwatchDAO {
     }
 
     void setDashboardName(final String dashboardName) {
-        this.dashboardName = dashboardName;
+        setDashboardNames(dashboardName == null ? List.of() : List.of(dashboardName));
+    }
+
+    @Value(value = "${aws.dashboard-name:}")
+    void setDashboardNames(final List<String> dashboardNames) {
+        this.dashboardNames = dashboardNames.stream().filter(name -> !name.isBlank()).toList();
+    }
+
+    // e.g. orders-* or service-?-prod, matched against every dashboard starting with the part before the first wildcard
+    @Value(value = "${aws.dashboard-pattern:}")
+    void setDashboardPattern(final String dashboardPattern) {
+        if (dashboardPattern.isBlank()) {
+            this.dashboardPattern = null;
+            this.dashboardNamePrefix = null;
+            return;
+        }
+        final var regex = new StringBuilder();
+        for (final var part : dashboardPattern.split("(?=[*?])|(?<=[*?])")) {
+            regex.append(switch (part) {
+                case "*" -> ".*";
+                case "?" -> ".";
+                default -> Pattern.quote(part);
+            });
+        }
+        final var wildcard = dashboardPattern.replace('?', '*').indexOf('*');
+        final var prefix = wildcard < 0 ? dashboardPattern : dashboardPattern.substring(0, wildcard);
+        this.dashboardPattern = Pattern.compile(regex.toString());
+        this.dashboardNamePrefix = prefix.isEmpty() ? null : prefix;
+    }
+
+    @Value(value = "${aws.dashboard-parallelism:" + DEFAULT_DASHBOARD_PARALLELISM + "}")
+    void setDashboardParallelism(final int dashboardParallelism) {
+        isTrue(dashboardParallelism > 0, "Dashboard parallelism must be positive!");
+        this.dashboardParallelism = dashboardParallelism;
+    }
+
+    @Value(value = "${aws.dashboard-metric-prefixes:}")
+    void setDashboardMetricPrefixes(final List<String> dashboardMetricPrefixes) {
+        this.dashboardMetricPrefixes = List.copyOf(dashboardMetricPrefixes);
+        this.metricMatcher = null;
+    }
+
+    @Value(value = "${aws.dashboard-namespaces:}")
+    void setDashboardNamespaces(final List<String> dashboardNamespaces) {
+        this.dashboardNamespaces = List.copyOf(dashboardNamespaces);
+        this.metricMatcher = null;
+    }
+
+    // Name=Value pairs
+    @Value(value = "${aws.dashboard-dimensions:}")
+    void setDashboardDimensions(final List<String> dashboardDimensions) {
+        final var dimensionValues = new LinkedHashMap<String, String>();
+        for (final var dimension : dashboardDimensions) {
+            final var separator = dimension.indexOf('=');
+            isTrue(separator > 0, "Dashboard dimensions must be given as Name=Value!");
+            dimensionValues.put(dimension.substring(0, separator).trim(), dimension.substring(separator + 1).trim());
+        }
+        this.dashboardDimensions = dimensionValues;
+        this.metricMatcher = null;
+    }
+
+    // an empty deploy id, e.g. an unset image tag, annotates every start as without one
+    @Value(value = "${aws.deploy-id:}")
+    void setDeployId(final String deployId) {
+        this.deployId = deployId == null || deployId.isBlank() ? null : deployId.trim();
+    }
+
+    @Value(value = "${aws.annotation-debounce:PT0S}")
+    void setAnnotationDebounce(final Duration annotationDebounce) {
+        notNull(annotationDebounce, "Annotation debounce must not be null!");
+        isTrue(!annotationDebounce.isNegative(), "Annotation debounce must not be negative!");
+        this.annotationDebounce = annotationDebounce;
+    }
+
+    @Value(value = "${aws.annotation-max-retries:" + DEFAULT_ANNOTATION_MAX_RETRIES + "}")
+    void setAnnotationMaxRetries(final int annotationMaxRetries) {
+        isTrue(annotationMaxRetries >= 0, "Annotation max retries must not be negative!");
+        this.annotationMaxRetries = annotationMaxRetries;
+    }
+
+    @Value(value = "${aws.annotation-max-count:" + Integer.MAX_VALUE + "}")
+    void setAnnotationMaxCount(final int annotationMaxCount) {
+        isTrue(annotationMaxCount > 0, "Annotation max count must be positive!");
+        this.annotationMaxCount = annotationMaxCount;
+    }
+
+    @Value(value = "${aws.annotation-max-age:#{null}}")
+    void setAnnotationMaxAge(final Duration annotationMaxAge) {
+        isTrue(annotationMaxAge == null || annotationMaxAge.isPositive(), "Annotation max age must be positive!");
+        this.annotationMaxAge = annotationMaxAge;
+    }
+
+    @Value(value = "${aws.annotation-merge-gap:#{null}}")
+    void setAnnotationMergeGap(final Duration annotationMergeGap) {
+        isTrue(annotationMergeGap == null || annotationMergeGap.isPositive(), "Annotation merge gap must be positive!");
+        this.annotationMergeGap = annotationMergeGap;
+    }
+
+    @Value(value = "${aws.max-concurrent-requests:" + DEFAULT_MAX_CONCURRENT_REQUESTS + "}")
+    void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        putMetricDataSender.setMaxConcurrentRequests(maxConcurrentRequests);
+    }
+
+    @Value(value = "${aws.max-pending-requests:" + PutMetricDataSender.DEFAULT_MAX_PENDING_REQUESTS + "}")
+    void setMaxPendingRequests(final int maxPendingRequests) {
+        putMetricDataSender.setMaxPendingRequests(maxPendingRequests);
+    }
+
+    @Value(value = "${aws.overflow-policy:drop-oldest}")
+    void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        putMetricDataSender.setOverflowPolicy(overflowPolicy);
+    }
+
+    @Value(value = "${aws.overflow-block-timeout:PT1S}")
+    void setOverflowBlockTimeout(final Duration overflowBlockTimeout) {
+        putMetricDataSender.setOverflowBlockTimeout(overflowBlockTimeout);
+    }
+
+    @Value(value = "${aws.max-retries:" + PutMetricDataSender.DEFAULT_MAX_RETRIES + "}")
+    void setMaxRetries(final int maxRetries) {
+        putMetricDataSender.setMaxRetries(maxRetries);
+    }
+
+    @Value(value = "${aws.retry-base-delay:PT0.1S}")
+    void setRetryBaseDelay(final Duration retryBaseDelay) {
+        putMetricDataSender.setRetryBaseDelay(retryBaseDelay);
+    }
+
+    @Value(value = "${aws.retry-max-delay:PT10S}")
+    void setRetryMaxDelay(final Duration retryMaxDelay) {
+        putMetricDataSender.setRetryMaxDelay(retryMaxDelay);
+    }
+
+    @Value(value = "${aws.max-requests-per-second:" + AdaptiveRateLimiter.DEFAULT_MAX_REQUESTS_PER_SECOND + "}")
+    void setMaxRequestsPerSecond(final double maxRequestsPerSecond) {
+        putMetricDataSender.setMaxRequestsPerSecond(maxRequestsPerSecond);
+    }
+
+    @Autowired
+    void setSpool(@Value(value = "${aws.spool.directory:}") final String directory,
+                  @Value(value = "${aws.spool.segment-size:16MB}") final DataSize segmentSize,
+                  @Value(value = "${aws.spool.max-size:256MB}") final DataSize maxSize) throws IOException {
+        if (!directory.isBlank()) {
+            putMetricDataSender.setSpool(new MetricSpool(Path.of(directory), segmentSize, maxSize));
+        }
+    }
+
+    @Value(value = "${aws.spool.replay-interval:PT1M}")
+    void setSpoolReplayInterval(final Duration spoolReplayInterval) {
+        notNull(spoolReplayInterval, "Spool replay interval must not be null!");
+        isTrue(spoolReplayInterval.toMillis() > 0, "Spool replay interval must be at least 1 ms!");
+        this.spoolReplayInterval = spoolReplayInterval;
+    }
+
+    // the configured transports and every MetricTransport bean, e.g. an in memory one for load tests
+    @Autowired
+    void setTransports(@Value(value = "${aws.transport:put-metric-data}") final List<MetricTransportType> types,
+                       @Value(value = "${aws.emf.file:}") final String emfFile,
+                       @Value(value = "${aws.emf.batch-size:64KB}") final DataSize emfBatchSize,
+                       final ObjectProvider<MetricTransport> customTransports) throws IOException {
+        final var transports = new ArrayList<MetricTransport>();
+        for (final var type : types) {
+            transports.add(switch (type) {
+                case PUT_METRIC_DATA -> putMetricDataSender;
+                case EMF -> emfFile.isBlank()
+                            ? EmfWriter.toStandardOut(Math.toIntExact(emfBatchSize.toBytes()))
+                            : EmfWriter.toFile(Path.of(emfFile), Math.toIntExact(emfBatchSize.toBytes()));
+            });
+        }
+        customTransports.orderedStream().forEach(transports::add);
+        setTransport(transports.size() == 1 ? transports.get(0) : new CompositeMetricTransport(transports));
+    }
+
+    void setTransport(final MetricTransport transport) {
+        notNull(transport, "Transport must not be null!");
+        this.transport = transport;
+    }
+
+    @Value(value = "${aws.high-resolution-metrics:}")
+    void setHighResolutionMetrics(final Set<String> highResolutionMetrics) {
+        metricIdentities.setHighResolutionMetrics(highResolutionMetrics);
+    }
+
+    @Value(value = "${aws.max-series:" + MetricIdentityCache.DEFAULT_MAX_SERIES + "}")
+    void setMaxSeries(final int maxSeries) {
+        metricIdentities.setMaxSeries(maxSeries);
+    }
+
+    void setShutdownTimeout(final Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
     }
 
     void setMetricPrefix(final String metricPrefix) {
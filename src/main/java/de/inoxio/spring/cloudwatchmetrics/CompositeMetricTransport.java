@@ -0,0 +1,49 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.notEmpty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+// sends every datum through all transports, e.g. PutMetricData and EMF during a migration
+class CompositeMetricTransport implements MetricTransport {
+
+    private final List<MetricTransport> transports;
+
+    CompositeMetricTransport(final List<MetricTransport> transports) {
+        notEmpty(transports, "Transports should at least contain one transport!");
+        this.transports = List.copyOf(transports);
+    }
+
+    @Override
+    public CompletableFuture<Void> send(final String namespace, final List<MetricDatum> metricDatums) {
+        final var sent = new CompletableFuture<?>[transports.size()];
+        for (var i = 0; i < sent.length; i++) {
+            sent[i] = transports.get(i).send(namespace, metricDatums);
+        }
+        return CompletableFuture.allOf(sent);
+    }
+
+    @Override
+    public long getDroppedDatums() {
+        return transports.stream().mapToLong(MetricTransport::getDroppedDatums).sum();
+    }
+
+    // the timeout is shared, every transport gets what the previous ones left over
+    @Override
+    public boolean close(final Duration timeout) {
+        final var deadline = System.nanoTime() + timeout.toNanos();
+        var closed = true;
+        for (final var transport : transports) {
+            final var remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+            closed &= transport.close(remaining);
+        }
+        return closed;
+    }
+
+    List<MetricTransport> getTransports() {
+        return transports;
+    }
+}
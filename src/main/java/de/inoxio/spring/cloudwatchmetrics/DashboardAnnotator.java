@@ -0,0 +1,450 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+// Copies a dashboard body token by token and adds a vertical annotation to every widget with a metric matched by the
+// metric matcher. A first pass only finds the matching widgets, because their annotations may come before their
+// metrics, so no object tree of the dashboard is ever built. Only the entries of the vertical annotations of annotated
+// widgets are read one by one, to apply the retention to the start annotations among them.
+final class DashboardAnnotator {
+
+    static final String START_LABEL = " Start";
+
+    private static final String WIDGETS = "widgets";
+    private static final String PROPERTIES = "properties";
+    private static final String METRICS = "metrics";
+    private static final String ANNOTATIONS = "annotations";
+    private static final String VERTICAL = "vertical";
+    private static final String LABEL = "label";
+    private static final String VALUE = "value";
+
+    private final JsonFactory jsonFactory;
+    private final String metricPrefix;
+    private final DashboardMetricMatcher metricMatcher;
+    private final Retention retention;
+
+    DashboardAnnotator(final JsonFactory jsonFactory, final String metricPrefix) {
+        this(jsonFactory, metricPrefix, Retention.UNLIMITED);
+    }
+
+    DashboardAnnotator(final JsonFactory jsonFactory, final String metricPrefix, final Retention retention) {
+        this(jsonFactory, metricPrefix, DashboardMetricMatcher.metricNamePrefix(metricPrefix), retention);
+    }
+
+    // the metric prefix labels the start annotations, the matcher selects the widgets
+    DashboardAnnotator(final JsonFactory jsonFactory,
+                       final String metricPrefix,
+                       final DashboardMetricMatcher metricMatcher,
+                       final Retention retention) {
+        notNull(jsonFactory, "Json factory must not be null!");
+        notNull(metricPrefix, "Metric prefix must not be null!");
+        notNull(metricMatcher, "Metric matcher must not be null!");
+        notNull(retention, "Retention must not be null!");
+        this.jsonFactory = jsonFactory;
+        this.metricPrefix = metricPrefix;
+        this.metricMatcher = metricMatcher;
+        this.retention = retention;
+    }
+
+    Annotated annotate(final String body, final String label, final Instant timestamp) throws IOException {
+        return annotate(body, label, timestamp, null);
+    }
+
+    // widgets that already have an annotation with the label are left as they are, e.g. one annotation per deploy
+    Annotated annotateOnce(final String body, final String label, final Instant timestamp) throws IOException {
+        return annotate(body, label, timestamp, label);
+    }
+
+    // the body is only written anew when a widget needs the annotation
+    private Annotated annotate(final String body,
+                               final String label,
+                               final Instant timestamp,
+                               final String skippedLabel) throws IOException {
+        final var matchingWidgets = matchingWidgets(body, skippedLabel);
+        if (matchingWidgets.isEmpty()) {
+            return new Annotated(body, false);
+        }
+
+        final var value = timestamp.truncatedTo(ChronoUnit.SECONDS);
+        final var annotation = new Annotation(label, value, value);
+        final var writer = new StringWriter(body.length() + 128 * matchingWidgets.cardinality());
+        try (var parser = jsonFactory.createParser(body);
+             var generator = jsonFactory.createGenerator(writer)) {
+            parser.nextToken();
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var field = parser.currentName();
+                generator.writeFieldName(field);
+                if (parser.nextToken() == JsonToken.START_ARRAY && WIDGETS.equals(field)) {
+                    copyWidgets(parser, generator, matchingWidgets, annotation);
+                } else {
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            generator.writeEndObject();
+        }
+        return new Annotated(writer.toString(), true);
+    }
+
+    BitSet matchingWidgets(final String body) throws IOException {
+        return matchingWidgets(body, null);
+    }
+
+    // indexes of the widgets to annotate, in the order they appear in the widgets array, widgets with an annotation
+    // labelled with the skipped label are left out
+    BitSet matchingWidgets(final String body, final String skippedLabel) throws IOException {
+        final var matchingWidgets = new BitSet();
+        try (var parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return matchingWidgets;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var field = parser.currentName();
+                if (parser.nextToken() == JsonToken.START_ARRAY && WIDGETS.equals(field)) {
+                    for (var index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+                        if (parser.currentToken() == JsonToken.START_OBJECT && widgetMatches(parser, skippedLabel)) {
+                            matchingWidgets.set(index);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return matchingWidgets;
+    }
+
+    // every method consumes the structure it starts on, also after a match
+    private boolean widgetMatches(final JsonParser parser, final String skippedLabel) throws IOException {
+        var matches = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_OBJECT && PROPERTIES.equals(field)) {
+                matches |= propertiesMatch(parser, skippedLabel);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return matches;
+    }
+
+    private boolean propertiesMatch(final JsonParser parser, final String skippedLabel) throws IOException {
+        var matches = false;
+        var annotated = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            final var token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY && METRICS.equals(field)) {
+                List<String> previousValues = List.of();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_ARRAY) {
+                        final var values = metricValues(parser, previousValues);
+                        matches |= metricMatcher.matches(values);
+                        previousValues = values;
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if (token == JsonToken.START_OBJECT && ANNOTATIONS.equals(field) && skippedLabel != null) {
+                annotated = hasVerticalAnnotation(parser, skippedLabel);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return matches && !annotated;
+    }
+
+    private static boolean hasVerticalAnnotation(final JsonParser parser, final String label) throws IOException {
+        var found = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && VERTICAL.equals(field)) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        found |= hasLabel(parser, label);
+                    } else if (parser.currentToken() == JsonToken.START_ARRAY) {
+                        // a band, labelled on its start
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            found |= parser.currentToken() == JsonToken.START_OBJECT && hasLabel(parser, label);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return found;
+    }
+
+    private static boolean hasLabel(final JsonParser parser, final String label) throws IOException {
+        var found = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_STRING && LABEL.equals(field)) {
+                found |= label.equals(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return found;
+    }
+
+    // [Namespace, MetricName, Dimension1Name, Dimension1Value, ... {Rendering Properties Object}], in one pass with
+    // "." resolved to the value at the same position of the previous metric, as the console writes them
+    private static List<String> metricValues(final JsonParser parser,
+                                             final List<String> previousValues) throws IOException {
+        final var values = new ArrayList<String>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                final var value = parser.getText();
+                values.add(".".equals(value) && values.size() < previousValues.size()
+                           ? previousValues.get(values.size())
+                           : value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    private void copyWidgets(final JsonParser parser,
+                                final JsonGenerator generator,
+                                final BitSet matchingWidgets,
+                                final Annotation annotation) throws IOException {
+        generator.writeStartArray();
+        for (var index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+            if (matchingWidgets.get(index)) {
+                copyObject(parser,
+                           generator,
+                           new Field(PROPERTIES, JsonToken.START_OBJECT),
+                           () -> copyProperties(parser, generator, annotation),
+                           null);
+            } else {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private void copyProperties(final JsonParser parser,
+                                final JsonGenerator generator,
+                                final Annotation annotation) throws IOException {
+        copyObject(parser,
+                   generator,
+                   new Field(ANNOTATIONS, JsonToken.START_OBJECT),
+                   () -> copyAnnotations(parser, generator, annotation),
+                   () -> {
+                       generator.writeObjectFieldStart(ANNOTATIONS);
+                       writeVertical(generator, annotation);
+                       generator.writeEndObject();
+                   });
+    }
+
+    private void copyAnnotations(final JsonParser parser,
+                                 final JsonGenerator generator,
+                                 final Annotation annotation) throws IOException {
+        copyObject(parser,
+                   generator,
+                   new Field(VERTICAL, JsonToken.START_ARRAY),
+                   () -> copyVertical(parser, generator, annotation),
+                   () -> writeVertical(generator, annotation));
+    }
+
+    // other entries are copied as they are, the start annotations are written after them as the retention keeps them
+    private void copyVertical(final JsonParser parser,
+                              final JsonGenerator generator,
+                              final Annotation annotation) throws IOException {
+        final var startAnnotations = new ArrayList<Annotation>();
+        startAnnotations.add(annotation);
+        generator.writeStartArray();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            final var entry = new TokenBuffer(parser.getCodec(), false);
+            entry.copyCurrentStructure(parser);
+            final var startAnnotation = startAnnotation(entry);
+            if (startAnnotation == null) {
+                entry.serialize(generator);
+            } else {
+                startAnnotations.add(startAnnotation);
+            }
+        }
+        for (final var retained : retention.retain(startAnnotations, annotation.end())) {
+            retained.write(generator);
+        }
+        generator.writeEndArray();
+    }
+
+    // null unless the entry is a start annotation or band as written by us, entries edited by hand are left alone
+    private Annotation startAnnotation(final TokenBuffer entry) throws IOException {
+        try (var parser = entry.asParser()) {
+            final Annotation start;
+            final Annotation end;
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                start = readAnnotation(parser);
+                end = start;
+            } else if (parser.currentToken() == JsonToken.START_ARRAY
+                       && parser.nextToken() == JsonToken.START_OBJECT) {
+                start = readAnnotation(parser);
+                end = parser.nextToken() == JsonToken.START_OBJECT ? readAnnotation(parser) : null;
+                if (parser.nextToken() != JsonToken.END_ARRAY) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+            if (start == null || end == null || start.label() == null
+                || !start.label().startsWith(metricPrefix + START_LABEL)) {
+                return null;
+            }
+            return new Annotation(start.label(), start.start(), end.start());
+        }
+    }
+
+    // null when the object has other fields than label and value
+    private static Annotation readAnnotation(final JsonParser parser) throws IOException {
+        String label = null;
+        Instant value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            final var token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING && LABEL.equals(field)) {
+                label = parser.getText();
+            } else if (token == JsonToken.VALUE_STRING && VALUE.equals(field)) {
+                try {
+                    value = Instant.parse(parser.getText());
+                } catch (final DateTimeParseException e) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return value == null ? null : new Annotation(label, value, value);
+    }
+
+    private static void writeVertical(final JsonGenerator generator, final Annotation annotation) throws IOException {
+        generator.writeArrayFieldStart(VERTICAL);
+        annotation.write(generator);
+        generator.writeEndArray();
+    }
+
+    // copies the object the parser is on, the field is handed to the copier when it holds a value of the expected
+    // structure, otherwise the field is replaced by what missing writes at the end of the object
+    private static void copyObject(final JsonParser parser,
+                                   final JsonGenerator generator,
+                                   final Field field,
+                                   final TokenCopier copier,
+                                   final TokenCopier missing) throws IOException {
+        var copied = false;
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var name = parser.currentName();
+            final var token = parser.nextToken();
+            if (field.name().equals(name) && token == field.start()) {
+                generator.writeFieldName(name);
+                copier.copy();
+                copied = true;
+            } else if (field.name().equals(name) && missing != null) {
+                // e.g. null, written anew below
+                parser.skipChildren();
+            } else {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        if (!copied && missing != null) {
+            missing.copy();
+        }
+        generator.writeEndObject();
+    }
+
+    @FunctionalInterface
+    private interface TokenCopier {
+
+        void copy() throws IOException;
+    }
+
+    private record Field(String name, JsonToken start) {
+    }
+
+    // start and end are the same unless it is a band
+    private record Annotation(String label, Instant start, Instant end) {
+
+        void write(final JsonGenerator generator) throws IOException {
+            if (start.equals(end)) {
+                writeValue(generator, label, start);
+                return;
+            }
+            generator.writeStartArray();
+            writeValue(generator, label, start);
+            writeValue(generator, null, end);
+            generator.writeEndArray();
+        }
+
+        private static void writeValue(final JsonGenerator generator,
+                                       final String label,
+                                       final Instant value) throws IOException {
+            generator.writeStartObject();
+            if (label != null) {
+                generator.writeStringField(LABEL, label);
+            }
+            generator.writeStringField(VALUE, DateTimeFormatter.ISO_INSTANT.format(value));
+            generator.writeEndObject();
+        }
+    }
+
+    // modified tells whether any widget got the annotation, the body is the original one otherwise
+    record Annotated(String body, boolean modified) {
+    }
+
+    // start annotations older than max age are removed, those closer to each other than the merge gap are merged into
+    // one band, of the rest only the newest max count are kept
+    record Retention(int maxCount, Duration maxAge, Duration mergeGap) {
+
+        static final Retention UNLIMITED = new Retention(Integer.MAX_VALUE, null, null);
+
+        Retention {
+            isTrue(maxCount > 0, "Max count must be positive!");
+        }
+
+        private List<Annotation> retain(final List<Annotation> annotations, final Instant now) {
+            annotations.sort(Comparator.comparing(Annotation::start));
+            final var retained = new ArrayList<Annotation>();
+            for (final var annotation : annotations) {
+                if (maxAge != null && annotation.end().isBefore(now.minus(maxAge))) {
+                    continue;
+                }
+                final var last = retained.isEmpty() ? null : retained.get(retained.size() - 1);
+                if (last != null && mergeGap != null && !annotation.start().isAfter(last.end().plus(mergeGap))) {
+                    // the band keeps the label of its newest start, e.g. the current deploy
+                    final var end = annotation.end().isAfter(last.end()) ? annotation.end() : last.end();
+                    retained.set(retained.size() - 1, new Annotation(annotation.label(), last.start(), end));
+                } else {
+                    retained.add(annotation);
+                }
+            }
+            return retained.subList(Math.max(0, retained.size() - maxCount), retained.size());
+        }
+    }
+}
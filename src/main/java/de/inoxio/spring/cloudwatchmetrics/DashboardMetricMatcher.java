@@ -0,0 +1,76 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.notEmpty;
+import static org.springframework.util.Assert.notNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Matches the values of a metric of a dashboard widget, the same as MetricDTO.getValues():
+// [Namespace, MetricName, Dimension1Name, Dimension1Value, Dimension2Name, Dimension2Value...]
+// A metric matches when its name starts with one of the prefixes, its namespace is one of the namespaces, if any are
+// given, and it has all of the dimensions with their values.
+final class DashboardMetricMatcher {
+
+    private final String[] metricNamePrefixes;
+    private final Set<String> namespaces;
+    private final Map<String, String> dimensions;
+
+    DashboardMetricMatcher(final Collection<String> metricNamePrefixes,
+                           final Collection<String> namespaces,
+                           final Map<String, String> dimensions) {
+        notEmpty(metricNamePrefixes, "Metric name prefixes must not be empty!");
+        notNull(namespaces, "Namespaces must not be null!");
+        notNull(dimensions, "Dimensions must not be null!");
+        this.metricNamePrefixes = compile(metricNamePrefixes);
+        this.namespaces = Set.copyOf(namespaces);
+        this.dimensions = Map.copyOf(dimensions);
+    }
+
+    static DashboardMetricMatcher metricNamePrefix(final String metricNamePrefix) {
+        return new DashboardMetricMatcher(List.of(metricNamePrefix), Set.of(), Map.of());
+    }
+
+    // prefixes starting with a shorter one are redundant, in sorted order that one is always the last one kept
+    private static String[] compile(final Collection<String> metricNamePrefixes) {
+        final var compiled = new ArrayList<String>();
+        metricNamePrefixes.stream().sorted().forEach(prefix -> {
+            if (compiled.isEmpty() || !prefix.startsWith(compiled.get(compiled.size() - 1))) {
+                compiled.add(prefix);
+            }
+        });
+        return compiled.toArray(String[]::new);
+    }
+
+    boolean matches(final List<String> values) {
+        if (values.size() < 2 || !hasMetricNamePrefix(values.get(1))) {
+            return false;
+        }
+        if (!namespaces.isEmpty() && !namespaces.contains(values.get(0))) {
+            return false;
+        }
+        var matchedDimensions = 0;
+        for (var i = 2; i + 1 < values.size() && matchedDimensions < dimensions.size(); i += 2) {
+            final var value = dimensions.get(values.get(i));
+            if (value != null) {
+                if (!value.equals(values.get(i + 1))) {
+                    return false;
+                }
+                matchedDimensions++;
+            }
+        }
+        return matchedDimensions == dimensions.size();
+    }
+
+    private boolean hasMetricNamePrefix(final String metricName) {
+        for (final var prefix : metricNamePrefixes) {
+            if (metricName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
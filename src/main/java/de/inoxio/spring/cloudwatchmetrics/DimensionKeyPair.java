@@ -36,7 +36,7 @@ public final class DimensionKeyPair {
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, value);
+        return 31 * Objects.hashCode(name) + Objects.hashCode(value);
     }
 
     @Override
@@ -0,0 +1,319 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+// https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/CloudWatch_Embedded_Metric_Format_Specification.html
+// one JSON document per line, cloudwatch logs extracts the metrics without any PutMetricData call
+class EmfWriter implements MetricTransport {
+
+    // limits of one document
+    static final int MAX_METRICS_PER_DOCUMENT = 100;
+    static final int MAX_VALUES_PER_METRIC = 100;
+    // samples of a counted metric per flush, above it each value keeps its share of them
+    static final int MAX_SAMPLES_PER_METRIC = 10 * MAX_VALUES_PER_METRIC;
+    static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmfWriter.class);
+
+    private final OutputStream sink;
+    // standard out is shared and never closed
+    private final boolean ownsSink;
+    private final int batchBytes;
+    // one generator and buffer for all documents, writes are serialized anyway, the sink is owned by the caller
+    private final ByteArrayOutputStream buffer;
+    private final JsonGenerator generator;
+    private final LongAdder droppedDatums = new LongAdder();
+
+    EmfWriter(final OutputStream sink) {
+        this(sink, false, DEFAULT_BATCH_BYTES);
+    }
+
+    EmfWriter(final OutputStream sink, final boolean ownsSink, final int batchBytes) {
+        notNull(sink, "Sink must not be null!");
+        isTrue(batchBytes > 0, "Batch size must be positive!");
+        this.sink = sink;
+        this.ownsSink = ownsSink;
+        this.batchBytes = batchBytes;
+        this.buffer = new ByteArrayOutputStream(batchBytes);
+        try {
+            this.generator = new JsonFactory().createGenerator(buffer);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // documents are separated by line breaks written after each of them
+        this.generator.setRootValueSeparator(null);
+    }
+
+    static EmfWriter toStandardOut(final int batchBytes) {
+        return new EmfWriter(System.out, false, batchBytes);
+    }
+
+    static EmfWriter toFile(final Path file, final int batchBytes) throws IOException {
+        final var sink = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new EmfWriter(sink, true, batchBytes);
+    }
+
+    // one document per dimension set and timestamp, unless the limits of a document require more
+    @Override
+    public synchronized CompletableFuture<Void> send(final String namespace, final List<MetricDatum> metricDatums) {
+        final var groups = new LinkedHashMap<Group, GroupMetrics>();
+        for (final var metricDatum : metricDatums) {
+            final var timestamp = metricDatum.timestamp() == null ? Instant.now() : metricDatum.timestamp();
+            groups.computeIfAbsent(new Group(timestamp, metricDatum.dimensions()), key -> new GroupMetrics())
+                  .add(metricDatum);
+        }
+
+        try {
+            for (final var group : groups.entrySet()) {
+                for (final var document : documents(group.getValue().metrics())) {
+                    writeDocument(namespace, group.getKey(), document.values());
+                    generator.flush();
+                    if (buffer.size() >= batchBytes) {
+                        writeBatch();
+                    }
+                }
+            }
+            writeBatch();
+        } catch (final IOException e) {
+            // only the sink fails, the generator always ends on a complete document
+            buffer.reset();
+            droppedDatums.add(metricDatums.size());
+            LOG.error("Unable to write metrics in embedded metric format!", e);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static void addMetric(final EmfMetric metric, final List<EmfMetric> metrics) {
+        final var values = metric.values().stream().filter(Double::isFinite).toList();
+        for (var from = 0; from < values.size(); from += MAX_VALUES_PER_METRIC) {
+            final var to = Math.min(from + MAX_VALUES_PER_METRIC, values.size());
+            metrics.add(new EmfMetric(metric.name(),
+                                      metric.unit(),
+                                      metric.highResolution(),
+                                      values.subList(from, to)));
+        }
+    }
+
+    // a metric name can only be used once per document, further values of it go into the next one
+    private static List<Map<String, EmfMetric>> documents(final List<EmfMetric> metrics) {
+        final var documents = new ArrayList<Map<String, EmfMetric>>();
+        // per metric name the first document that does not have it yet
+        final var nextDocuments = new HashMap<String, Integer>();
+        var firstOpenDocument = 0;
+        for (final var metric : metrics) {
+            var index = Math.max(firstOpenDocument, nextDocuments.getOrDefault(metric.name(), 0));
+            while (index < documents.size() && documents.get(index).size() >= MAX_METRICS_PER_DOCUMENT) {
+                index++;
+            }
+            if (index == documents.size()) {
+                documents.add(new LinkedHashMap<>());
+            }
+            documents.get(index).put(metric.name(), metric);
+            nextDocuments.put(metric.name(), index + 1);
+            while (firstOpenDocument < documents.size()
+                   && documents.get(firstOpenDocument).size() >= MAX_METRICS_PER_DOCUMENT) {
+                firstOpenDocument++;
+            }
+        }
+        return documents;
+    }
+
+    private void writeDocument(final String namespace,
+                               final Group group,
+                               final Iterable<EmfMetric> metrics) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("_aws");
+        generator.writeNumberField("Timestamp", group.timestamp().toEpochMilli());
+        generator.writeArrayFieldStart("CloudWatchMetrics");
+        generator.writeStartObject();
+        generator.writeStringField("Namespace", namespace);
+        generator.writeArrayFieldStart("Dimensions");
+        generator.writeStartArray();
+        for (final var dimension : group.dimensions()) {
+            generator.writeString(dimension.name());
+        }
+        generator.writeEndArray();
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("Metrics");
+        for (final var metric : metrics) {
+            generator.writeStartObject();
+            generator.writeStringField("Name", metric.name());
+            if (metric.unit() != null) {
+                generator.writeStringField("Unit", metric.unit().toString());
+            }
+            if (metric.highResolution()) {
+                generator.writeNumberField("StorageResolution", MetricIdentity.HIGH_RESOLUTION);
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        for (final var dimension : group.dimensions()) {
+            generator.writeStringField(dimension.name(), dimension.value());
+        }
+        for (final var metric : metrics) {
+            generator.writeFieldName(metric.name());
+            if (metric.values().size() == 1) {
+                generator.writeNumber(metric.values().get(0));
+            } else {
+                generator.writeStartArray();
+                for (final var value : metric.values()) {
+                    generator.writeNumber(value);
+                }
+                generator.writeEndArray();
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    // whole lines only, so documents of concurrent writers to the same stream never interleave
+    private void writeBatch() throws IOException {
+        if (buffer.size() == 0) {
+            return;
+        }
+        buffer.writeTo(sink);
+        buffer.reset();
+        sink.flush();
+    }
+
+    @Override
+    public long getDroppedDatums() {
+        return droppedDatums.sum();
+    }
+
+    // every send is written synchronously, there is nothing to wait for
+    @Override
+    public synchronized boolean close(final Duration timeout) {
+        if (ownsSink) {
+            try {
+                sink.close();
+            } catch (final IOException e) {
+                LOG.error("Unable to close embedded metric format sink!", e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Group(Instant timestamp, List<Dimension> dimensions) {
+    }
+
+    private record EmfMetric(String name, StandardUnit unit, boolean highResolution, List<Double> values) {
+    }
+
+    // the metrics of one dimension set and timestamp, under the same names put metric data uses for them
+    private static final class GroupMetrics {
+
+        private final List<EmfMetric> values = new ArrayList<>();
+        private final Map<String, Samples> samples = new LinkedHashMap<>();
+
+        void add(final MetricDatum metricDatum) {
+            final var name = metricDatum.metricName();
+            final var unit = metricDatum.unit();
+            final var highResolution = metricDatum.storageResolution() != null
+                                       && metricDatum.storageResolution() == MetricIdentity.HIGH_RESOLUTION;
+            if (metricDatum.value() != null) {
+                addMetric(new EmfMetric(name, unit, highResolution, List.of(metricDatum.value())), values);
+            } else if (metricDatum.hasValues() && !metricDatum.hasCounts()) {
+                addMetric(new EmfMetric(name, unit, highResolution, metricDatum.values()), values);
+            } else if (metricDatum.hasValues()) {
+                final var sample = samples.computeIfAbsent(name, key -> new Samples(unit, highResolution));
+                for (var i = 0; i < metricDatum.values().size(); i++) {
+                    sample.add(metricDatum.values().get(i), metricDatum.counts().get(i));
+                }
+            } else if (metricDatum.statisticValues() != null) {
+                samples.computeIfAbsent(name, key -> new Samples(unit, highResolution))
+                       .add(metricDatum.statisticValues());
+            }
+        }
+
+        List<EmfMetric> metrics() {
+            final var metrics = new ArrayList<>(values);
+            samples.forEach((name, sample) -> addMetric(new EmfMetric(name,
+                                                                      sample.unit,
+                                                                      sample.highResolution,
+                                                                      sample.values()), metrics));
+            return metrics;
+        }
+    }
+
+    // EMF has no counts, every value is repeated as often as it was counted, merged per flush
+    private static final class Samples {
+
+        private final StandardUnit unit;
+        private final boolean highResolution;
+        private final Map<Double, Double> counts = new LinkedHashMap<>();
+        private double count;
+
+        Samples(final StandardUnit unit, final boolean highResolution) {
+            this.unit = unit;
+            this.highResolution = highResolution;
+        }
+
+        void add(final double value, final double valueCount) {
+            if (valueCount > 0) {
+                counts.merge(value, valueCount, Double::sum);
+                count += valueCount;
+            }
+        }
+
+        // minimum and maximum once, the remaining samples at the value that keeps the sum
+        void add(final StatisticSet statisticSet) {
+            final var sampleCount = Math.round(statisticSet.sampleCount());
+            if (sampleCount < 1) {
+                return;
+            }
+            add(statisticSet.minimum(), 1);
+            if (sampleCount > 1) {
+                add(statisticSet.maximum(), 1);
+            }
+            if (sampleCount > 2) {
+                final var remaining = sampleCount - 2;
+                add((statisticSet.sum() - statisticSet.minimum() - statisticSet.maximum()) / remaining, remaining);
+            }
+        }
+
+        // above the limit the distribution is kept, but count and sum are scaled down with it
+        List<Double> values() {
+            final var scale = Math.min(1, MAX_SAMPLES_PER_METRIC / count);
+            final var values = new ArrayList<Double>();
+            counts.forEach((value, valueCount) -> {
+                final var repeat = Math.max(1, Math.round(valueCount * scale));
+                for (var i = 0L; i < repeat; i++) {
+                    values.add(value);
+                }
+            });
+            return values;
+        }
+    }
+}
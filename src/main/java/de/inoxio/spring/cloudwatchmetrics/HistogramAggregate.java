@@ -0,0 +1,147 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+// Logarithmic buckets as in DDSketch (https://arxiv.org/abs/1908.10693): every value in (gamma^(i-1), gamma^i] is
+// counted in bucket i and sent as one representative value, which is at most relativeError away from the value.
+final class HistogramAggregate implements MetricAggregate {
+
+    private final double gamma;
+    private final double logGamma;
+    private final BucketCounts positiveCounts = new BucketCounts();
+    private final BucketCounts negativeCounts = new BucketCounts();
+    private long zeroCount;
+
+    HistogramAggregate(final double relativeError) {
+        isTrue(relativeError > 0 && relativeError < 1, "Relative error must be between 0 and 1!");
+        this.gamma = (1 + relativeError) / (1 - relativeError);
+        this.logGamma = Math.log(gamma);
+    }
+
+    @Override
+    public void record(final double value) {
+        record(value, 1);
+    }
+
+    synchronized void record(final double value, final long count) {
+        // an infinite value has no bucket, cloudwatch would reject it anyway
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        if (value >= Double.MIN_NORMAL) {
+            positiveCounts.add(bucketIndex(value), count);
+        } else if (value <= -Double.MIN_NORMAL) {
+            negativeCounts.add(bucketIndex(-value), count);
+        } else {
+            zeroCount += count;
+        }
+    }
+
+    @Override
+    public synchronized void addMetricDatums(final MetricIdentity identity,
+                                             final Instant timestamp,
+                                             final List<MetricDatum> metricDatums) {
+        final var values = new ArrayList<Double>();
+        final var counts = new ArrayList<Double>();
+        negativeCounts.forEachBucket((index, count) -> {
+            values.add(-bucketValue(index));
+            counts.add((double) count);
+        });
+        if (zeroCount > 0) {
+            values.add(0.0);
+            counts.add((double) zeroCount);
+        }
+        positiveCounts.forEachBucket((index, count) -> {
+            values.add(bucketValue(index));
+            counts.add((double) count);
+        });
+
+        for (var from = 0; from < values.size(); from += ValueCountsAggregate.MAX_VALUES_PER_DATUM) {
+            final var to = Math.min(from + ValueCountsAggregate.MAX_VALUES_PER_DATUM, values.size());
+            metricDatums.add(identity.metricDatumBuilder(timestamp)
+                                     .values(values.subList(from, to))
+                                     .counts(counts.subList(from, to))
+                                     .build());
+        }
+    }
+
+    int bucketIndex(final double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    double bucketValue(final int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    // counts of consecutive bucket indexes in one primitive array, growing on both ends as needed
+    static final class BucketCounts {
+
+        // keeps the array small even for values spanning many orders of magnitude, the lowest buckets get merged
+        static final int MAX_BUCKETS = 2048;
+        private static final int INITIAL_BUCKETS = 32;
+
+        private long[] counts;
+        private int offset;
+
+        void increment(final int index) {
+            add(index, 1);
+        }
+
+        void add(final int index, final long count) {
+            if (counts == null) {
+                counts = new long[INITIAL_BUCKETS];
+                offset = index - INITIAL_BUCKETS / 2;
+            } else if (index < offset) {
+                final var highest = offset + counts.length - 1;
+                final var length = highest - index + 1;
+                if (length > MAX_BUCKETS) {
+                    counts[0] += count;
+                    return;
+                }
+                final var newLength = Math.min(MAX_BUCKETS, Math.max(length, counts.length * 2));
+                resize(highest - newLength + 1, newLength);
+            } else if (index >= offset + counts.length) {
+                final var length = index - offset + 1;
+                final var newLength = Math.min(MAX_BUCKETS, Math.max(length, counts.length * 2));
+                resize(Math.max(offset, index - newLength + 1), newLength);
+            }
+            counts[index - offset] += count;
+        }
+
+        private void resize(final int newOffset, final int newLength) {
+            final var resized = new long[newLength];
+            for (var i = 0; i < counts.length; i++) {
+                // buckets below the new offset are merged into the lowest one
+                resized[Math.max(offset + i - newOffset, 0)] += counts[i];
+            }
+            counts = resized;
+            offset = newOffset;
+        }
+
+        void forEachBucket(final BucketConsumer consumer) {
+            if (counts == null) {
+                return;
+            }
+            for (var i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    consumer.accept(offset + i, counts[i]);
+                }
+            }
+        }
+
+        int size() {
+            return counts == null ? 0 : counts.length;
+        }
+    }
+
+    @FunctionalInterface
+    interface BucketConsumer {
+
+        void accept(int index, long count);
+    }
+}
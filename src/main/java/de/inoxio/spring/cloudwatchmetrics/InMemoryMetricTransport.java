@@ -0,0 +1,58 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+// stand-in for cloudwatch in tests and load tests, only counts datums unless asked to keep them
+public class InMemoryMetricTransport implements MetricTransport {
+
+    private final boolean retaining;
+    private final LongAdder sentRequests = new LongAdder();
+    private final LongAdder sentDatums = new LongAdder();
+    private final List<MetricDatum> metricDatums = new ArrayList<>();
+
+    public InMemoryMetricTransport() {
+        this(true);
+    }
+
+    public InMemoryMetricTransport(final boolean retaining) {
+        this.retaining = retaining;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(final String namespace, final List<MetricDatum> metricDatums) {
+        sentRequests.increment();
+        sentDatums.add(metricDatums.size());
+        if (retaining) {
+            synchronized (this.metricDatums) {
+                this.metricDatums.addAll(metricDatums);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public long getSentRequests() {
+        return sentRequests.sum();
+    }
+
+    public long getSentDatums() {
+        return sentDatums.sum();
+    }
+
+    public List<MetricDatum> getMetricDatums() {
+        synchronized (metricDatums) {
+            return List.copyOf(metricDatums);
+        }
+    }
+
+    public void clear() {
+        sentRequests.reset();
+        sentDatums.reset();
+        synchronized (metricDatums) {
+            metricDatums.clear();
+        }
+    }
+}
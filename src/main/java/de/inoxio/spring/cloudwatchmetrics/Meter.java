@@ -0,0 +1,20 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+interface Meter {
+
+    String getMetricName();
+
+    StandardUnit getUnit();
+
+    // high resolution meters are flushed with the high resolution window
+    boolean isHighResolution();
+
+    // called by the flushing thread only, converts everything recorded since the last call
+    void addMetricDatums(List<Dimension> dimensions, Instant timestamp, List<MetricDatum> metricDatums);
+}
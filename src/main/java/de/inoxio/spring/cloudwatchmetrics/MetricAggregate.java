@@ -0,0 +1,13 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+interface MetricAggregate {
+
+    void record(double value);
+
+    // every datum gets the timestamp of the window the aggregate belongs to
+    void addMetricDatums(MetricIdentity identity, Instant timestamp, List<MetricDatum> metricDatums);
+}
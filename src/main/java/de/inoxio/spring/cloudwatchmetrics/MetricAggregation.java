@@ -0,0 +1,11 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+public enum MetricAggregation {
+
+    // every distinct value is kept and sent with its count
+    VALUES,
+    // only minimum, maximum, sum and sample count are kept and sent as one statistic set
+    STATISTIC_SET,
+    // values are counted in logarithmic buckets and sent as values and counts, keeping percentiles queryable
+    HISTOGRAM
+}
@@ -0,0 +1,141 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+class MetricBuffer {
+
+    static final double DEFAULT_HISTOGRAM_RELATIVE_ERROR = 0.01;
+    static final Duration STANDARD_RESOLUTION = Duration.ofMinutes(1);
+
+    // recording threads never block each other, only drain waits for recordings into the swapped window
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private final Clock clock;
+    private final long resolutionMillis;
+    private volatile Window window;
+    private volatile MetricAggregation aggregation;
+    private volatile double histogramRelativeError = DEFAULT_HISTOGRAM_RELATIVE_ERROR;
+
+    MetricBuffer() {
+        this(MetricAggregation.VALUES);
+    }
+
+    MetricBuffer(final MetricAggregation aggregation) {
+        this(aggregation, STANDARD_RESOLUTION, Clock.systemUTC());
+    }
+
+    MetricBuffer(final Duration resolution) {
+        this(MetricAggregation.VALUES, resolution, Clock.systemUTC());
+    }
+
+    MetricBuffer(final MetricAggregation aggregation, final Duration resolution, final Clock clock) {
+        notNull(resolution, "Resolution must not be null!");
+        isTrue(resolution.toMillis() > 0, "Resolution must be at least one millisecond!");
+        notNull(clock, "Clock must not be null!");
+        setAggregation(aggregation);
+        this.resolutionMillis = resolution.toMillis();
+        this.clock = clock;
+        // the first window started with the period we are in
+        this.window = new Window(Instant.ofEpochMilli(Math.floorDiv(clock.millis(), resolutionMillis)
+                                                      * resolutionMillis));
+    }
+
+    void record(final MetricIdentity identity, final double value) {
+        record(identity, value, aggregation);
+    }
+
+    void record(final MetricIdentity identity, final double value, final MetricAggregation aggregation) {
+        final var phase = phaser.writerCriticalSectionEnter();
+        try {
+            final var aggregates = window.aggregates(aggregation);
+            var aggregate = aggregates.get(identity);
+            if (aggregate == null) {
+                aggregate = aggregates.computeIfAbsent(identity, key -> newAggregate(aggregation));
+            }
+            aggregate.record(value);
+        } finally {
+            phaser.writerCriticalSectionExit(phase);
+        }
+    }
+
+    List<MetricDatum> drain() {
+        final var metricDatums = new ArrayList<MetricDatum>();
+        drain(metricDatums);
+        return metricDatums;
+    }
+
+    // adds the datums of the current window and returns its timestamp
+    Instant drain(final List<MetricDatum> metricDatums) {
+        final Window drained;
+        phaser.readerLock();
+        try {
+            drained = window;
+            window = new Window(nextWindowTimestamp());
+            phaser.flipPhase();
+        } finally {
+            phaser.readerUnlock();
+        }
+
+        drained.forEach((identity, aggregate) -> aggregate.addMetricDatums(identity, drained.timestamp, metricDatums));
+        return drained.timestamp;
+    }
+
+    // the start of the period we are in, drains scheduled on a boundary that run a little early count as on time
+    private Instant nextWindowTimestamp() {
+        final var earlyMillis = resolutionMillis / 10;
+        final var start = Math.floorDiv(clock.millis() + earlyMillis, resolutionMillis) * resolutionMillis;
+        return Instant.ofEpochMilli(Math.max(start, window.timestamp.toEpochMilli()));
+    }
+
+    private MetricAggregate newAggregate(final MetricAggregation aggregation) {
+        return switch (aggregation) {
+            case VALUES -> new ValueCountsAggregate(histogramRelativeError);
+            case STATISTIC_SET -> new StatisticSetAggregate();
+            case HISTOGRAM -> new HistogramAggregate(histogramRelativeError);
+        };
+    }
+
+    void setAggregation(final MetricAggregation aggregation) {
+        notNull(aggregation, "Aggregation must not be null!");
+        this.aggregation = aggregation;
+    }
+
+    void setHistogramRelativeError(final double histogramRelativeError) {
+        isTrue(histogramRelativeError > 0 && histogramRelativeError < 1, "Relative error must be between 0 and 1!");
+        this.histogramRelativeError = histogramRelativeError;
+    }
+
+    // everything recorded between two drains, one map per aggregation so a series can be recorded in several ways
+    private static final class Window {
+
+        private final Instant timestamp;
+        private final Map<MetricAggregation, Map<MetricIdentity, MetricAggregate>> aggregates =
+         new EnumMap<>(MetricAggregation.class);
+
+        Window(final Instant timestamp) {
+            this.timestamp = timestamp;
+            for (final var aggregation : MetricAggregation.values()) {
+                aggregates.put(aggregation, new ConcurrentHashMap<>());
+            }
+        }
+
+        Map<MetricIdentity, MetricAggregate> aggregates(final MetricAggregation aggregation) {
+            return aggregates.get(aggregation);
+        }
+
+        void forEach(final BiConsumer<MetricIdentity, MetricAggregate> consumer) {
+            aggregates.values().forEach(map -> map.forEach(consumer));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+public final class MetricCounter implements Meter {
+
+    private final String metricName;
+    private final StandardUnit unit;
+    private final boolean highResolution;
+    // never reset, so no increment gets lost between reading and resetting
+    private final DoubleAdder total = new DoubleAdder();
+    private double flushedTotal;
+
+    MetricCounter(final String metricName) {
+        this(metricName, StandardUnit.COUNT, false);
+    }
+
+    MetricCounter(final String metricName, final StandardUnit unit, final boolean highResolution) {
+        this.metricName = metricName;
+        this.unit = unit;
+        this.highResolution = highResolution;
+    }
+
+    public void increment() {
+        total.add(1);
+    }
+
+    public void increment(final double amount) {
+        total.add(amount);
+    }
+
+    @Override
+    public String getMetricName() {
+        return metricName;
+    }
+
+    @Override
+    public StandardUnit getUnit() {
+        return unit;
+    }
+
+    @Override
+    public boolean isHighResolution() {
+        return highResolution;
+    }
+
+    @Override
+    public void addMetricDatums(final List<Dimension> dimensions,
+                                final Instant timestamp,
+                                final List<MetricDatum> metricDatums) {
+        final var currentTotal = total.sum();
+        metricDatums.add(MetricIdentity.metricDatumBuilder(metricName, dimensions, unit, highResolution, timestamp)
+                                       .value(currentTotal - flushedTotal)
+                                       .build());
+        flushedTotal = currentTotal;
+    }
+}
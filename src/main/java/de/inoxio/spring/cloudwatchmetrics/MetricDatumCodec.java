@@ -0,0 +1,160 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+// Compact binary form of a PutMetricDataRequest: the namespace, the number of datums and per datum its name, a flag
+// byte telling which optional fields follow, the dimensions and the values with their counts.
+final class MetricDatumCodec {
+
+    private static final int HAS_VALUE = 1;
+    private static final int HAS_STATISTIC_VALUES = 1 << 1;
+    private static final int HAS_TIMESTAMP = 1 << 2;
+    private static final int HAS_STORAGE_RESOLUTION = 1 << 3;
+    private static final int HAS_UNIT = 1 << 4;
+
+    private MetricDatumCodec() {
+    }
+
+    // throws BufferOverflowException when the request does not fit, the buffer position is undefined then
+    static void encode(final PutMetricDataRequest request, final ByteBuffer buffer) {
+        putString(request.namespace(), buffer);
+        buffer.putInt(request.metricData().size());
+        for (final var metricDatum : request.metricData()) {
+            encode(metricDatum, buffer);
+        }
+    }
+
+    private static void encode(final MetricDatum metricDatum, final ByteBuffer buffer) {
+        putString(metricDatum.metricName(), buffer);
+        var flags = 0;
+        flags |= metricDatum.value() != null ? HAS_VALUE : 0;
+        flags |= metricDatum.statisticValues() != null ? HAS_STATISTIC_VALUES : 0;
+        flags |= metricDatum.timestamp() != null ? HAS_TIMESTAMP : 0;
+        flags |= metricDatum.storageResolution() != null ? HAS_STORAGE_RESOLUTION : 0;
+        flags |= metricDatum.unitAsString() != null ? HAS_UNIT : 0;
+        buffer.put((byte) flags);
+        if (metricDatum.value() != null) {
+            buffer.putDouble(metricDatum.value());
+        }
+        if (metricDatum.statisticValues() != null) {
+            buffer.putDouble(metricDatum.statisticValues().sampleCount());
+            buffer.putDouble(metricDatum.statisticValues().sum());
+            buffer.putDouble(metricDatum.statisticValues().minimum());
+            buffer.putDouble(metricDatum.statisticValues().maximum());
+        }
+        if (metricDatum.timestamp() != null) {
+            buffer.putLong(metricDatum.timestamp().toEpochMilli());
+        }
+        if (metricDatum.storageResolution() != null) {
+            buffer.putInt(metricDatum.storageResolution());
+        }
+        if (metricDatum.unitAsString() != null) {
+            putString(metricDatum.unitAsString(), buffer);
+        }
+        buffer.putShort((short) metricDatum.dimensions().size());
+        for (final var dimension : metricDatum.dimensions()) {
+            putString(dimension.name(), buffer);
+            putString(dimension.value(), buffer);
+        }
+        buffer.putShort((short) metricDatum.values().size());
+        for (final var value : metricDatum.values()) {
+            buffer.putDouble(value);
+        }
+        buffer.putShort((short) metricDatum.counts().size());
+        for (final var count : metricDatum.counts()) {
+            buffer.putDouble(count);
+        }
+    }
+
+    static PutMetricDataRequest decode(final ByteBuffer buffer) {
+        final var namespace = getString(buffer);
+        final var datumCount = buffer.getInt();
+        final var metricDatums = new ArrayList<MetricDatum>(datumCount);
+        for (var i = 0; i < datumCount; i++) {
+            metricDatums.add(decodeMetricDatum(buffer));
+        }
+        return PutMetricDataRequest.builder().namespace(namespace).metricData(metricDatums).build();
+    }
+
+    private static MetricDatum decodeMetricDatum(final ByteBuffer buffer) {
+        final var builder = MetricDatum.builder().metricName(getString(buffer));
+        final var flags = buffer.get();
+        if ((flags & HAS_VALUE) != 0) {
+            builder.value(buffer.getDouble());
+        }
+        if ((flags & HAS_STATISTIC_VALUES) != 0) {
+            builder.statisticValues(StatisticSet.builder()
+                                                .sampleCount(buffer.getDouble())
+                                                .sum(buffer.getDouble())
+                                                .minimum(buffer.getDouble())
+                                                .maximum(buffer.getDouble())
+                                                .build());
+        }
+        if ((flags & HAS_TIMESTAMP) != 0) {
+            builder.timestamp(Instant.ofEpochMilli(buffer.getLong()));
+        }
+        if ((flags & HAS_STORAGE_RESOLUTION) != 0) {
+            builder.storageResolution(buffer.getInt());
+        }
+        if ((flags & HAS_UNIT) != 0) {
+            builder.unit(getString(buffer));
+        }
+        // empty lists stay unset, like in the datums built for sending
+        final var dimensionCount = buffer.getShort();
+        if (dimensionCount > 0) {
+            final var dimensions = new ArrayList<Dimension>(dimensionCount);
+            for (var i = 0; i < dimensionCount; i++) {
+                dimensions.add(Dimension.builder().name(getString(buffer)).value(getString(buffer)).build());
+            }
+            builder.dimensions(dimensions);
+        }
+        final var values = getDoubles(buffer);
+        if (!values.isEmpty()) {
+            builder.values(values);
+        }
+        final var counts = getDoubles(buffer);
+        if (!counts.isEmpty()) {
+            builder.counts(counts);
+        }
+        return builder.build();
+    }
+
+    // the number of datums, without decoding them
+    static int datumCount(final ByteBuffer buffer) {
+        final var namespaceLength = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+        return buffer.getInt(buffer.position() + Short.BYTES + namespaceLength);
+    }
+
+    private static void putString(final String value, final ByteBuffer buffer) {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new BufferOverflowException();
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final var bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<Double> getDoubles(final ByteBuffer buffer) {
+        final var size = buffer.getShort();
+        final var doubles = new ArrayList<Double>(size);
+        for (var i = 0; i < size; i++) {
+            doubles.add(buffer.getDouble());
+        }
+        return doubles;
+    }
+}
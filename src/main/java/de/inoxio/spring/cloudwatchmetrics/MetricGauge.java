@@ -0,0 +1,75 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+public final class MetricGauge implements Meter {
+
+    private final String metricName;
+    private final StandardUnit unit;
+    private final boolean highResolution;
+    private final DoubleSupplier valueSupplier;
+    private volatile double value = Double.NaN;
+
+    MetricGauge(final String metricName) {
+        this(metricName, StandardUnit.COUNT, false);
+    }
+
+    MetricGauge(final String metricName, final StandardUnit unit, final boolean highResolution) {
+        this.metricName = metricName;
+        this.unit = unit;
+        this.highResolution = highResolution;
+        this.valueSupplier = () -> value;
+    }
+
+    MetricGauge(final String metricName, final DoubleSupplier valueSupplier) {
+        this(metricName, StandardUnit.COUNT, false, valueSupplier);
+    }
+
+    MetricGauge(final String metricName,
+                final StandardUnit unit,
+                final boolean highResolution,
+                final DoubleSupplier valueSupplier) {
+        this.metricName = metricName;
+        this.unit = unit;
+        this.highResolution = highResolution;
+        this.valueSupplier = valueSupplier;
+    }
+
+    public void set(final double value) {
+        this.value = value;
+    }
+
+    @Override
+    public String getMetricName() {
+        return metricName;
+    }
+
+    @Override
+    public StandardUnit getUnit() {
+        return unit;
+    }
+
+    @Override
+    public boolean isHighResolution() {
+        return highResolution;
+    }
+
+    @Override
+    public void addMetricDatums(final List<Dimension> dimensions,
+                                final Instant timestamp,
+                                final List<MetricDatum> metricDatums) {
+        final var currentValue = valueSupplier.getAsDouble();
+        // nothing was set yet
+        if (Double.isNaN(currentValue)) {
+            return;
+        }
+        metricDatums.add(MetricIdentity.metricDatumBuilder(metricName, dimensions, unit, highResolution, timestamp)
+                                       .value(currentValue)
+                                       .build());
+    }
+}
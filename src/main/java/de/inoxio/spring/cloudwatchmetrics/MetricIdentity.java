@@ -0,0 +1,103 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+// one metric series, built once and reused for every recording, so name, dimensions and hash are not rebuilt
+final class MetricIdentity {
+
+    // https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/cloudwatch_concepts.html#Resolution_definition
+    static final int HIGH_RESOLUTION = 1;
+
+    private final String metricName;
+    private final List<Dimension> dimensions;
+    private final List<Dimension> globalDimensions;
+    private final StandardUnit unit;
+    private final boolean highResolution;
+    private final int hashCode;
+
+    MetricIdentity(final String metricName,
+                   final List<Dimension> dimensions,
+                   final List<Dimension> globalDimensions,
+                   final StandardUnit unit,
+                   final boolean highResolution) {
+        this.metricName = metricName;
+        this.dimensions = List.copyOf(dimensions);
+        this.globalDimensions = globalDimensions;
+        this.unit = unit;
+        this.highResolution = highResolution;
+        this.hashCode = 31 * (31 * metricName.hashCode() + this.dimensions.hashCode()) + unit.hashCode();
+    }
+
+    MetricIdentity(final String metricName, final List<Dimension> dimensions) {
+        this(metricName, dimensions, dimensions, StandardUnit.COUNT, false);
+    }
+
+    // everything but the values set, standard resolution is left out as it is the default
+    static MetricDatum.Builder metricDatumBuilder(final String metricName,
+                                                  final List<Dimension> dimensions,
+                                                  final StandardUnit unit,
+                                                  final boolean highResolution,
+                                                  final Instant timestamp) {
+        final var builder = MetricDatum.builder()
+                                       .metricName(metricName)
+                                       .dimensions(dimensions)
+                                       .unit(unit)
+                                       .timestamp(timestamp);
+        return highResolution ? builder.storageResolution(HIGH_RESOLUTION) : builder;
+    }
+
+    MetricDatum.Builder metricDatumBuilder(final Instant timestamp) {
+        return metricDatumBuilder(metricName, dimensions, unit, highResolution, timestamp);
+    }
+
+    String getMetricName() {
+        return metricName;
+    }
+
+    List<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    // the global dimension snapshot this identity was built from
+    List<Dimension> getGlobalDimensions() {
+        return globalDimensions;
+    }
+
+    StandardUnit getUnit() {
+        return unit;
+    }
+
+    boolean isHighResolution() {
+        return highResolution;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final var that = (MetricIdentity) o;
+
+        return hashCode == that.hashCode && unit == that.unit && highResolution == that.highResolution
+               && metricName.equals(that.metricName) && dimensions.equals(that.dimensions);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricIdentity{" + "metricName='" + metricName + '\'' + ", dimensions=" + dimensions + ", unit=" + unit
+               + '}';
+    }
+}
@@ -0,0 +1,127 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+class MetricIdentityCache {
+
+    static final int DEFAULT_MAX_SERIES = 10_000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricIdentityCache.class);
+
+    private final Map<Key, MetricIdentity> identities = new ConcurrentHashMap<>();
+    private final AtomicInteger series = new AtomicInteger();
+    private final LongAdder droppedSeries = new LongAdder();
+    private volatile int maxSeries = DEFAULT_MAX_SERIES;
+    private volatile Set<String> highResolutionMetrics = Set.of();
+
+    // returns null when the series is new and the cardinality limit is reached
+    MetricIdentity get(final String metricPrefix,
+                       final String name,
+                       final List<Dimension> globalDimensions,
+                       final List<DimensionKeyPair> dimensions) {
+        return get(metricPrefix, name, globalDimensions, dimensions, StandardUnit.COUNT);
+    }
+
+    // the same name recorded in different units are different series
+    MetricIdentity get(final String metricPrefix,
+                       final String name,
+                       final List<Dimension> globalDimensions,
+                       final List<DimensionKeyPair> dimensions,
+                       final StandardUnit unit) {
+        final var identity = identities.get(new Key(name, dimensions, unit));
+        // identities built from an outdated global dimension snapshot are rebuilt, but not counted again
+        if (identity != null && identity.getGlobalDimensions() == globalDimensions) {
+            return identity;
+        }
+        final var key = new Key(name, List.copyOf(dimensions), unit);
+        if (identity != null) {
+            final var rebuilt = createIdentity(metricPrefix, name, globalDimensions, dimensions, unit);
+            identities.put(key, rebuilt);
+            return rebuilt;
+        }
+        // the slot is reserved before the series is added, so concurrent new series cannot exceed the limit
+        if (series.incrementAndGet() > maxSeries) {
+            series.decrementAndGet();
+            if (droppedSeries.sum() == 0) {
+                LOG.warn("Limit of {} metric series reached, new series are dropped!", maxSeries);
+            }
+            droppedSeries.increment();
+            return null;
+        }
+        final var created = createIdentity(metricPrefix, name, globalDimensions, dimensions, unit);
+        if (identities.putIfAbsent(key, created) != null) {
+            // another thread added the same series meanwhile
+            series.decrementAndGet();
+        }
+        return created;
+    }
+
+    private MetricIdentity createIdentity(final String metricPrefix,
+                                          final String name,
+                                          final List<Dimension> globalDimensions,
+                                          final List<DimensionKeyPair> dimensions,
+                                          final StandardUnit unit) {
+        return new MetricIdentity(metricPrefix + name,
+                                  mergeDimensions(globalDimensions, dimensions),
+                                  globalDimensions,
+                                  unit,
+                                  isHighResolution(name));
+    }
+
+    // dimensions of a single metric override global dimensions with the same name
+    static List<Dimension> mergeDimensions(final List<Dimension> globalDimensions,
+                                           final List<DimensionKeyPair> dimensions) {
+        if (dimensions.isEmpty()) {
+            return globalDimensions;
+        }
+        final var merged = new ArrayList<>(globalDimensions);
+        for (final var dimensionKeyPair : dimensions) {
+            merged.removeIf(dimension -> dimension.name().equals(dimensionKeyPair.getName()));
+            merged.add(Dimension.builder().name(dimensionKeyPair.getName()).value(dimensionKeyPair.getValue()).build());
+        }
+        return merged;
+    }
+
+    boolean isHighResolution(final String name) {
+        return highResolutionMetrics.contains(name);
+    }
+
+    boolean hasHighResolutionMetrics() {
+        return !highResolutionMetrics.isEmpty();
+    }
+
+    long getDroppedSeries() {
+        return droppedSeries.sum();
+    }
+
+    int size() {
+        return series.get();
+    }
+
+    void setMaxSeries(final int maxSeries) {
+        isTrue(maxSeries > 0, "Max series must be positive!");
+        this.maxSeries = maxSeries;
+    }
+
+    // only affects identities created afterwards, meant to be set once on startup
+    void setHighResolutionMetrics(final Set<String> highResolutionMetrics) {
+        notNull(highResolutionMetrics, "High resolution metrics must not be null!");
+        this.highResolutionMetrics = Set.copyOf(highResolutionMetrics);
+    }
+
+    private record Key(String name, List<DimensionKeyPair> dimensions, StandardUnit unit) {
+    }
+}
@@ -1,15 +1,19 @@
 package de.inoxio.spring.cloudwatchmetrics;
 
+import java.time.Duration;
 import java.util.Objects;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
 
 public final class MetricKeyPair {
 
     private final String name;
     private final double value;
+    private final StandardUnit unit;
 
-    private MetricKeyPair(final String name, final double value) {
+    private MetricKeyPair(final String name, final double value, final StandardUnit unit) {
         this.name = name;
         this.value = value;
+        this.unit = unit;
     }
 
     public String getName() {
@@ -20,6 +24,10 @@ public final class MetricKeyPair {
         return value;
     }
 
+    public StandardUnit getUnit() {
+        return unit;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -31,23 +39,25 @@ public final class MetricKeyPair {
 
         final var that = (MetricKeyPair) o;
 
-        return Double.compare(that.value, value) == 0 && Objects.equals(name, that.name);
+        return Double.compare(that.value, value) == 0 && Objects.equals(name, that.name) && unit == that.unit;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, value);
+        return Objects.hash(name, value, unit);
     }
 
     @Override
     public String toString() {
-        return "MetricKeyPair{" + "name='" + name + '\'' + ", value=" + value + '}';
+        return "MetricKeyPair{" + "name='" + name + '\'' + ", value=" + value + ", unit=" + unit + '}';
     }
 
     public static final class MetricKeyPairBuilder {
 
         private String name;
         private double value;
+        private Duration duration;
+        private StandardUnit unit;
 
         private MetricKeyPairBuilder() {
         }
@@ -63,11 +73,27 @@ public final class MetricKeyPair {
 
         public MetricKeyPairBuilder value(final double value) {
             this.value = value;
+            this.duration = null;
+            return this;
+        }
+
+        // converted into the unit on build, milliseconds if no unit is set
+        public MetricKeyPairBuilder value(final Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public MetricKeyPairBuilder unit(final StandardUnit unit) {
+            this.unit = unit;
             return this;
         }
 
         public MetricKeyPair build() {
-            return new MetricKeyPair(name, value);
+            if (duration != null) {
+                final var durationUnit = unit == null ? StandardUnit.MILLISECONDS : unit;
+                return new MetricKeyPair(name, duration.toNanos() / MetricUnits.nanosPer(durationUnit), durationUnit);
+            }
+            return new MetricKeyPair(name, value, unit == null ? StandardUnit.COUNT : unit);
         }
     }
 }
@@ -0,0 +1,238 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+
+// Requests that could not be delivered, appended to memory mapped segment files and replayed in order. Appending is a
+// memory copy, the segments are forced to disk at most once per second, when rotating and on close. A crash may thus
+// lose the last second or replay a request twice. Above the disk budget the oldest segment is deleted.
+final class MetricSpool implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".spool";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricSpool.class);
+    // segment header: magic number, then the position of the next record to replay
+    private static final int MAGIC = 0x434d5350;
+    private static final int READ_POSITION_OFFSET = Integer.BYTES;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentId;
+    private long droppedDatums;
+    private long forcedNanos = System.nanoTime();
+
+    MetricSpool(final Path directory, final DataSize segmentSize, final DataSize maxSize) throws IOException {
+        notNull(directory, "Directory must not be null!");
+        notNull(segmentSize, "Segment size must not be null!");
+        notNull(maxSize, "Max size must not be null!");
+        isTrue(segmentSize.toBytes() > HEADER_BYTES && segmentSize.toBytes() <= Integer.MAX_VALUE,
+               "Segment size must be between 9 bytes and 2 GB!");
+        isTrue(maxSize.toBytes() >= segmentSize.toBytes(), "Max size must not be smaller than the segment size!");
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.maxSize = maxSize.toBytes();
+
+        Files.createDirectories(directory);
+        try (final var paths = Files.list(directory)) {
+            for (final var path : paths.filter(path -> path.toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                if (Files.size(path) == 0) {
+                    // created right before a crash, it never got a header
+                    LOG.debug("Delete empty metric spool segment {}", path);
+                    Files.delete(path);
+                    continue;
+                }
+                final var segment = Segment.open(path, 0);
+                if (segment == null) {
+                    LOG.warn("Ignore {}, it is not a metric spool segment!", path);
+                    continue;
+                }
+                segments.addLast(segment);
+                nextSegmentId = Math.max(nextSegmentId, segmentId(path) + 1);
+            }
+        }
+        if (!segments.isEmpty()) {
+            LOG.info("Found {} metric spool segments in {} to replay", segments.size(), directory);
+        }
+    }
+
+    synchronized void append(final PutMetricDataRequest request) throws IOException {
+        final var segment = segments.peekLast();
+        if (segment == null || !segment.append(request)) {
+            if (!addSegment().append(request)) {
+                LOG.warn("Request of {} metrics is larger than a spool segment, drop it!", request.metricData().size());
+                droppedDatums += request.metricData().size();
+                return;
+            }
+        }
+        if (System.nanoTime() - forcedNanos >= FORCE_INTERVAL_NANOS) {
+            force();
+        }
+    }
+
+    // the oldest request not yet replayed, null when there is none
+    synchronized PutMetricDataRequest poll() throws IOException {
+        while (!segments.isEmpty()) {
+            final var segment = segments.peekFirst();
+            final var request = segment.poll();
+            if (request != null || segment == segments.peekLast()) {
+                return request;
+            }
+            segments.removeFirst();
+            Files.deleteIfExists(segment.path);
+        }
+        return null;
+    }
+
+    private Segment addSegment() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.peekLast().force();
+        }
+        final var segment = Segment.open(directory.resolve(String.format("metrics-%019d%s",
+                                                                          nextSegmentId++,
+                                                                          SEGMENT_SUFFIX)), segmentSize);
+        segments.addLast(segment);
+        while ((long) segments.size() * segmentSize > maxSize) {
+            final var oldest = segments.removeFirst();
+            final var unreplayed = oldest.unreplayedDatums();
+            LOG.warn("Metric spool exceeds {} bytes, drop {} metrics of the oldest segment!", maxSize, unreplayed);
+            droppedDatums += unreplayed;
+            Files.deleteIfExists(oldest.path);
+        }
+        return segment;
+    }
+
+    synchronized void force() {
+        segments.forEach(Segment::force);
+        forcedNanos = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    synchronized long getDroppedDatums() {
+        return droppedDatums;
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private static long segmentId(final Path path) {
+        final var fileName = path.getFileName().toString();
+        try {
+            return Long.parseLong(fileName.substring(fileName.lastIndexOf('-') + 1, fileName.indexOf('.')));
+        } catch (final RuntimeException e) {
+            return 0;
+        }
+    }
+
+    // records are the length followed by the encoded request, a length of zero marks the end
+    private static final class Segment {
+
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(final Path path, final MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+            this.writePosition = buffer.getInt(READ_POSITION_OFFSET);
+            while (hasRecordAt(writePosition)) {
+                writePosition += Integer.BYTES + buffer.getInt(writePosition);
+            }
+        }
+
+        // creates the segment with the given size, existing segments keep their size
+        static Segment open(final Path path, final int size) throws IOException {
+            try (final var channel = FileChannel.open(path,
+                                                      StandardOpenOption.CREATE,
+                                                      StandardOpenOption.READ,
+                                                      StandardOpenOption.WRITE)) {
+                final var existing = channel.size() > 0;
+                final var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, existing ? channel.size() : size);
+                if (!existing) {
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(READ_POSITION_OFFSET, HEADER_BYTES);
+                } else if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                    return null;
+                }
+                return new Segment(path, buffer);
+            }
+        }
+
+        boolean append(final PutMetricDataRequest request) {
+            if (writePosition + Integer.BYTES > buffer.capacity()) {
+                return false;
+            }
+            final var record = buffer.slice(writePosition + Integer.BYTES,
+                                            buffer.capacity() - writePosition - Integer.BYTES);
+            try {
+                MetricDatumCodec.encode(request, record);
+            } catch (final BufferOverflowException e) {
+                return false;
+            }
+            // the length goes last, replay only sees complete records
+            buffer.putInt(writePosition, record.position());
+            writePosition += Integer.BYTES + record.position();
+            return true;
+        }
+
+        PutMetricDataRequest poll() {
+            final var readPosition = buffer.getInt(READ_POSITION_OFFSET);
+            if (!hasRecordAt(readPosition)) {
+                return null;
+            }
+            final var length = buffer.getInt(readPosition);
+            buffer.putInt(READ_POSITION_OFFSET, readPosition + Integer.BYTES + length);
+            try {
+                return MetricDatumCodec.decode(buffer.slice(readPosition + Integer.BYTES, length));
+            } catch (final RuntimeException e) {
+                LOG.warn("Skip corrupt record in metric spool segment {}!", path, e);
+                return poll();
+            }
+        }
+
+        int unreplayedDatums() {
+            var datums = 0;
+            for (var position = buffer.getInt(READ_POSITION_OFFSET); hasRecordAt(position);
+                 position += Integer.BYTES + buffer.getInt(position)) {
+                datums += MetricDatumCodec.datumCount(buffer.slice(position + Integer.BYTES, buffer.getInt(position)));
+            }
+            return datums;
+        }
+
+        private boolean hasRecordAt(final int position) {
+            if (position < HEADER_BYTES || position + Integer.BYTES > buffer.capacity()) {
+                return false;
+            }
+            final var length = buffer.getInt(position);
+            return length > 0 && length <= buffer.capacity() - position - Integer.BYTES;
+        }
+
+        void force() {
+            buffer.force();
+        }
+    }
+}
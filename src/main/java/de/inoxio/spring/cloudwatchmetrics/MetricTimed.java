@@ -0,0 +1,23 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+// times every invocation of the annotated method with a timer of the buffered DAO, see MetricTimedAspect
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface MetricTimed {
+
+    // metric name, defaults to ClassName.methodName
+    String value() default "";
+
+    // one of seconds, milliseconds or microseconds
+    StandardUnit unit() default StandardUnit.MILLISECONDS;
+
+    MetricAggregation aggregation() default MetricAggregation.STATISTIC_SET;
+}
@@ -0,0 +1,79 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@ConditionalOnClass(name = "org.aspectj.lang.ProceedingJoinPoint")
+@ConditionalOnProperty(name = "aws.push-mode", havingValue = "buffered")
+public class MetricTimedAspect {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricTimedAspect.class);
+
+    private final CloudwatchMeters cloudwatchMeters;
+    // timers are resolved once per method, an invocation only reads the clock twice and records the difference
+    private final Map<Method, MetricTimer> timers = new ConcurrentHashMap<>();
+    // methods whose timer could not be resolved, they are invoked untimed without logging on every call
+    private final Set<Method> untimedMethods = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public MetricTimedAspect(final CloudwatchMeters cloudwatchMeters) {
+        this.cloudwatchMeters = cloudwatchMeters;
+    }
+
+    @Around("@annotation(metricTimed)")
+    public Object time(final ProceedingJoinPoint joinPoint, final MetricTimed metricTimed) throws Throwable {
+        final var timer = timerOf(((MethodSignature) joinPoint.getSignature()).getMethod(), metricTimed);
+        if (timer == null) {
+            return joinPoint.proceed();
+        }
+        final var start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            // failed invocations are timed as well, they took their time just the same
+            timer.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private MetricTimer timerOf(final Method method, final MetricTimed metricTimed) {
+        final var timer = timers.get(method);
+        if (timer != null) {
+            return timer;
+        }
+        if (untimedMethods.contains(method)) {
+            return null;
+        }
+        // a misconfigured timer must never break the intercepted call
+        try {
+            return timers.computeIfAbsent(method, key -> cloudwatchMeters.timer(metricName(key, metricTimed),
+                                                                                metricTimed.unit(),
+                                                                                metricTimed.aggregation()));
+        } catch (final RuntimeException e) {
+            if (untimedMethods.add(method)) {
+                LOG.error("Unable to create timer for {}, invoking it untimed!", method, e);
+            }
+            return null;
+        }
+    }
+
+    private static String metricName(final Method method, final MetricTimed metricTimed) {
+        if (!metricTimed.value().isEmpty()) {
+            return metricTimed.value();
+        }
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+}
@@ -0,0 +1,183 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+public final class MetricTimer implements Meter {
+
+    private final String metricName;
+    private final StandardUnit unit;
+    // resolved once, samples are recorded in nanoseconds and converted on flush
+    private final double nanosPerUnit;
+    private final boolean highResolution;
+    private final MetricAggregation aggregation;
+    private final double histogramRelativeError;
+    // count and total are never reset, so no sample gets lost between reading and resetting
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator minimumNanos = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maximumNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private long flushedCount;
+    private long flushedTotalNanos;
+    // only used for histograms, swapped on flush like the buffer windows
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private volatile HistogramAggregate histogram;
+
+    MetricTimer(final String metricName) {
+        this(metricName, StandardUnit.MILLISECONDS, false);
+    }
+
+    MetricTimer(final String metricName, final StandardUnit unit, final boolean highResolution) {
+        this(metricName, unit, highResolution, MetricAggregation.STATISTIC_SET);
+    }
+
+    MetricTimer(final String metricName,
+                final StandardUnit unit,
+                final boolean highResolution,
+                final MetricAggregation aggregation) {
+        this(metricName, unit, highResolution, aggregation, MetricBuffer.DEFAULT_HISTOGRAM_RELATIVE_ERROR);
+    }
+
+    MetricTimer(final String metricName,
+                final StandardUnit unit,
+                final boolean highResolution,
+                final MetricAggregation aggregation,
+                final double histogramRelativeError) {
+        isTrue(aggregation != MetricAggregation.VALUES, "Timers aggregate into statistic sets or histograms!");
+        this.metricName = metricName;
+        this.unit = unit;
+        this.nanosPerUnit = MetricUnits.nanosPer(unit);
+        this.highResolution = highResolution;
+        this.aggregation = aggregation;
+        this.histogramRelativeError = histogramRelativeError;
+        if (aggregation == MetricAggregation.HISTOGRAM) {
+            this.histogram = new HistogramAggregate(histogramRelativeError);
+        }
+    }
+
+    // for try-with-resources, the sample does not escape the block and is usually not allocated on the heap at all
+    public Sample start() {
+        return new Sample(this, System.nanoTime());
+    }
+
+    public void record(final Duration duration) {
+        recordNanos(duration.toNanos());
+    }
+
+    public void record(final long amount, final TimeUnit unit) {
+        recordNanos(unit.toNanos(amount));
+    }
+
+    public void recordNanos(final long nanos) {
+        if (aggregation == MetricAggregation.HISTOGRAM) {
+            final var phase = phaser.writerCriticalSectionEnter();
+            try {
+                histogram.record(nanos / nanosPerUnit);
+            } finally {
+                phaser.writerCriticalSectionExit(phase);
+            }
+            return;
+        }
+        count.increment();
+        totalNanos.add(nanos);
+        minimumNanos.accumulate(nanos);
+        maximumNanos.accumulate(nanos);
+    }
+
+    @Override
+    public String getMetricName() {
+        return metricName;
+    }
+
+    @Override
+    public StandardUnit getUnit() {
+        return unit;
+    }
+
+    public MetricAggregation getAggregation() {
+        return aggregation;
+    }
+
+    @Override
+    public boolean isHighResolution() {
+        return highResolution;
+    }
+
+    @Override
+    public void addMetricDatums(final List<Dimension> dimensions,
+                                final Instant timestamp,
+                                final List<MetricDatum> metricDatums) {
+        if (aggregation == MetricAggregation.HISTOGRAM) {
+            addHistogramDatums(dimensions, timestamp, metricDatums);
+            return;
+        }
+        final var currentCount = count.sum();
+        final var currentTotalNanos = totalNanos.sum();
+        final var minimum = minimumNanos.getThenReset();
+        final var maximum = maximumNanos.getThenReset();
+
+        final var sampleCount = currentCount - flushedCount;
+        final var sumNanos = currentTotalNanos - flushedTotalNanos;
+        flushedCount = currentCount;
+        flushedTotalNanos = currentTotalNanos;
+        if (sampleCount <= 0) {
+            return;
+        }
+
+        // a sample racing with the reset may miss minimum or maximum, the mean keeps them consistent
+        final var meanNanos = (double) sumNanos / sampleCount;
+        final var statisticSet = StatisticSet.builder()
+                                             .sampleCount((double) sampleCount)
+                                             .sum(sumNanos / nanosPerUnit)
+                                             .minimum(Math.min(minimum, meanNanos) / nanosPerUnit)
+                                             .maximum(Math.max(maximum, meanNanos) / nanosPerUnit)
+                                             .build();
+        metricDatums.add(MetricIdentity.metricDatumBuilder(metricName, dimensions, unit, highResolution, timestamp)
+                                       .statisticValues(statisticSet)
+                                       .build());
+    }
+
+    private void addHistogramDatums(final List<Dimension> dimensions,
+                                    final Instant timestamp,
+                                    final List<MetricDatum> metricDatums) {
+        final HistogramAggregate drained;
+        phaser.readerLock();
+        try {
+            drained = histogram;
+            histogram = new HistogramAggregate(histogramRelativeError);
+            phaser.flipPhase();
+        } finally {
+            phaser.readerUnlock();
+        }
+        drained.addMetricDatums(new MetricIdentity(metricName, dimensions, dimensions, unit, highResolution),
+                                timestamp,
+                                metricDatums);
+    }
+
+    // a running measurement, recorded into its timer when closed
+    public static final class Sample implements AutoCloseable {
+
+        private final MetricTimer timer;
+        private final long startNanos;
+
+        private Sample(final MetricTimer timer, final long startNanos) {
+            this.timer = timer;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            timer.recordNanos(System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+// where converted and aggregated metrics end up, beans of this type are used in addition to aws.transport
+public interface MetricTransport {
+
+    // must not block the caller for long, the returned future completes once the datums are delivered or given up
+    CompletableFuture<Void> send(String namespace, List<MetricDatum> metricDatums);
+
+    default long getDroppedDatums() {
+        return 0;
+    }
+
+    // called once on shutdown, returns false when not everything was delivered within the timeout
+    default boolean close(final Duration timeout) {
+        return true;
+    }
+}
@@ -0,0 +1,9 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+public enum MetricTransportType {
+
+    // PutMetricData requests through the CloudWatchAsyncClient
+    PUT_METRIC_DATA,
+    // embedded metric format log lines, ingested by cloudwatch logs
+    EMF
+}
@@ -0,0 +1,19 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+final class MetricUnits {
+
+    private MetricUnits() {
+    }
+
+    // factor to convert nanoseconds into the given time unit
+    static double nanosPer(final StandardUnit unit) {
+        return switch (unit) {
+            case SECONDS -> 1_000_000_000.0;
+            case MILLISECONDS -> 1_000_000.0;
+            case MICROSECONDS -> 1_000.0;
+            default -> throw new IllegalArgumentException("Unit " + unit + " is not a time unit!");
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+public enum OverflowPolicy {
+
+    // the request waiting longest is dropped to make room for the new one
+    DROP_OLDEST,
+    // the new request is dropped
+    DROP_NEWEST,
+    // the sending thread waits for room up to the overflow block timeout, then the new request is dropped
+    BLOCK
+}
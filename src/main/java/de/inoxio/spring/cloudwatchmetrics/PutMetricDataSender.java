@@ -0,0 +1,575 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+class PutMetricDataSender implements MetricTransport {
+
+    // https://docs.aws.amazon.com/AmazonCloudWatch/latest/APIReference/API_PutMetricData.html
+    static final int MAX_DATUMS_PER_REQUEST = 1000;
+    static final int MAX_REQUEST_BYTES = 1024 * 1024;
+
+    // Action=PutMetricData&Version=2010-08-01&Namespace=
+    private static final int REQUEST_OVERHEAD_BYTES = 64;
+    // &MetricData.member.1000. in front of every datum field
+    private static final int FIELD_PREFIX_BYTES = 24;
+    // .member.150= in front of every list element
+    private static final int MEMBER_PREFIX_BYTES = 12;
+    // longest string representation of a double
+    private static final int NUMBER_BYTES = 24;
+
+    static final int DEFAULT_MAX_PENDING_REQUESTS = 100;
+    static final int DEFAULT_MAX_RETRIES = 3;
+    // datums of failed requests kept for the next send, above it they are dropped
+    static final int MAX_UNDELIVERED_DATUMS = 10 * MAX_DATUMS_PER_REQUEST;
+
+    private static final Logger LOG = LoggerFactory.getLogger(PutMetricDataSender.class);
+
+    private final CloudWatchAsyncClient cloudWatchClient;
+    private final Deque<PendingRequest> pending = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final AtomicInteger dispatchRounds = new AtomicInteger();
+    private final LongAdder droppedRequests = new LongAdder();
+    private final LongAdder droppedDatums = new LongAdder();
+    private final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter();
+    private final Map<String, List<MetricDatum>> undelivered = new HashMap<>();
+    private int inFlight;
+    private int retrying;
+    private volatile boolean closing;
+    private volatile int maxConcurrentRequests;
+    private volatile int maxPendingRequests = DEFAULT_MAX_PENDING_REQUESTS;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile Duration overflowBlockTimeout = Duration.ofSeconds(1);
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile Duration retryBaseDelay = Duration.ofMillis(100);
+    private volatile Duration retryMaxDelay = Duration.ofSeconds(10);
+    private volatile MetricSpool spool;
+    private ScheduledExecutorService replayScheduler;
+
+    PutMetricDataSender(final CloudWatchAsyncClient cloudWatchClient, final int maxConcurrentRequests) {
+        notNull(cloudWatchClient, "CloudWatchClient must not be null!");
+        this.cloudWatchClient = cloudWatchClient;
+        setMaxConcurrentRequests(maxConcurrentRequests);
+    }
+
+    @Override
+    public CompletableFuture<Void> send(final String namespace, final List<MetricDatum> metricDatums) {
+        final var chunks = chunk(namespace, withUndelivered(namespace, metricDatums));
+        final var completions = new CompletableFuture<?>[chunks.size()];
+        for (var i = 0; i < chunks.size(); i++) {
+            final var request = PutMetricDataRequest.builder().namespace(namespace).metricData(chunks.get(i)).build();
+            final var pendingRequest = new PendingRequest(request, new CompletableFuture<>(), 0);
+            completions[i] = pendingRequest.completion();
+            enqueue(pendingRequest);
+            // start sending right away, a blocked sender must not wait for its own queued chunks
+            dispatch();
+        }
+        return CompletableFuture.allOf(completions);
+    }
+
+    // undelivered datums fill up the requests of this send instead of costing requests of their own
+    private List<MetricDatum> withUndelivered(final String namespace, final List<MetricDatum> metricDatums) {
+        final List<MetricDatum> undeliveredDatums;
+        lock.lock();
+        try {
+            undeliveredDatums = undelivered.remove(namespace);
+        } finally {
+            lock.unlock();
+        }
+        if (undeliveredDatums == null) {
+            return metricDatums;
+        }
+        undeliveredDatums.addAll(metricDatums);
+        return undeliveredDatums;
+    }
+
+    private void enqueue(final PendingRequest pendingRequest) {
+        lock.lock();
+        try {
+            var remainingNanos = overflowBlockTimeout.toNanos();
+            // requests waiting for their retry are part of the window, a degraded backend must not grow memory
+            while (pending.size() + retrying >= maxPendingRequests) {
+                switch (overflowPolicy) {
+                    case DROP_OLDEST -> {
+                        final var oldest = pollOldestNew();
+                        if (oldest == null) {
+                            drop(pendingRequest);
+                            return;
+                        }
+                        drop(oldest);
+                    }
+                    case DROP_NEWEST -> {
+                        drop(pendingRequest);
+                        return;
+                    }
+                    case BLOCK -> {
+                        if (remainingNanos <= 0) {
+                            drop(pendingRequest);
+                            return;
+                        }
+                        remainingNanos = notFull.awaitNanos(remainingNanos);
+                    }
+                }
+            }
+            pending.addLast(pendingRequest);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drop(pendingRequest);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // retries already waited through their backoff and are never dropped in favour of newer requests
+    private PendingRequest pollOldestNew() {
+        final var iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            final var pendingRequest = iterator.next();
+            if (pendingRequest.attempt() == 0) {
+                iterator.remove();
+                return pendingRequest;
+            }
+        }
+        return null;
+    }
+
+    private void drop(final PendingRequest pendingRequest) {
+        droppedRequests.increment();
+        droppedDatums.add(pendingRequest.request().metricData().size());
+        // log the first drop and then less and less often, a degraded backend must not flood the log
+        final var dropped = droppedRequests.sum();
+        if (Long.bitCount(dropped) == 1) {
+            LOG.warn("Too many pending requests to cloudwatch, {} requests dropped so far!", dropped);
+        }
+        pendingRequest.completion().complete(null);
+    }
+
+    // only one thread sends at a time, callbacks completing synchronously just ask it for another round
+    private void dispatch() {
+        if (dispatchRounds.getAndIncrement() != 0) {
+            return;
+        }
+        var rounds = 1;
+        do {
+            sendPendingRequests();
+            rounds = dispatchRounds.addAndGet(-rounds);
+        } while (rounds != 0);
+    }
+
+    private void sendPendingRequests() {
+        while (true) {
+            final PendingRequest next;
+            lock.lock();
+            try {
+                if (inFlight >= maxConcurrentRequests || pending.isEmpty()) {
+                    return;
+                }
+                next = pending.pollFirst();
+                inFlight++;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            final var delayNanos = rateLimiter.reserve();
+            if (delayNanos > 0) {
+                CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> putMetricData(next));
+            } else {
+                putMetricData(next);
+            }
+        }
+    }
+
+    private void putMetricData(final PendingRequest pendingRequest) {
+        requestPutMetricData(pendingRequest.request()).whenComplete((putMetricDataResponse, throwable) -> {
+            try {
+                if (throwable == null) {
+                    rateLimiter.onSuccess();
+                    pendingRequest.completion().complete(null);
+                    replaySpooled();
+                } else {
+                    final var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    handleFailure(pendingRequest, cause);
+                }
+            } catch (final RuntimeException e) {
+                LOG.error("Unable to handle response of cloudwatch!", e);
+                pendingRequest.completion().complete(null);
+            } finally {
+                // a scheduled retry or replayed request is already counted, close never sees a false idle moment
+                lock.lock();
+                try {
+                    inFlight--;
+                    signalIfIdle();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            dispatch();
+        });
+    }
+
+    // a client failing before it returns a future is handled like a failed request, so the slot is released
+    private CompletableFuture<PutMetricDataResponse> requestPutMetricData(final PutMetricDataRequest request) {
+        try {
+            return cloudWatchClient.putMetricData(request);
+        } catch (final RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void handleFailure(final PendingRequest pendingRequest, final Throwable throwable) {
+        if (isThrottling(throwable)) {
+            rateLimiter.onThrottled();
+        }
+        if (!isRetryable(throwable)) {
+            LOG.error("Unable to send request to cloudwatch!", throwable);
+            droppedDatums.add(pendingRequest.request().metricData().size());
+            pendingRequest.completion().complete(null);
+        } else if (pendingRequest.attempt() < maxRetries) {
+            final var backoffNanos = backoffNanos(pendingRequest.attempt());
+            LOG.warn("Unable to send request to cloudwatch, retry in {} ms: {}",
+                     TimeUnit.NANOSECONDS.toMillis(backoffNanos),
+                     throwable.getMessage());
+            lock.lock();
+            try {
+                retrying++;
+            } finally {
+                lock.unlock();
+            }
+            CompletableFuture.delayedExecutor(backoffNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                retry(pendingRequest);
+                dispatch();
+            });
+        } else {
+            LOG.warn("Unable to send request to cloudwatch after {} retries, keep it for the next send: {}",
+                     maxRetries,
+                     throwable.getMessage());
+            keepUndelivered(pendingRequest.request());
+            pendingRequest.completion().complete(null);
+        }
+    }
+
+    // without traffic no success triggers the replay, so it is also started right away and then periodically
+    void startReplay(final Duration replayInterval) {
+        notNull(replayInterval, "Replay interval must not be null!");
+        isTrue(replayInterval.toMillis() > 0, "Replay interval must be at least 1 ms!");
+        lock.lock();
+        try {
+            if (spool == null || replayScheduler != null || closing) {
+                return;
+            }
+            replayScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                                                                               .name("cloudwatch-metrics-replay")
+                                                                               .daemon()
+                                                                               .factory());
+            replayScheduler.scheduleWithFixedDelay(this::replay,
+                                                   0,
+                                                   replayInterval.toMillis(),
+                                                   TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void replay() {
+        try {
+            replaySpooled();
+            dispatch();
+        } catch (final RuntimeException e) {
+            // keep the scheduler alive, the next replay gets another chance
+            LOG.error("Unable to replay metric spool!", e);
+        }
+    }
+
+    // cloudwatch is reachable again, spooled requests use the capacity not needed for new ones
+    private void replaySpooled() {
+        final var currentSpool = spool;
+        if (currentSpool == null || closing) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!pending.isEmpty()) {
+                return;
+            }
+            final var request = currentSpool.poll();
+            if (request != null) {
+                pending.addLast(new PendingRequest(request, new CompletableFuture<>(), 0));
+            }
+        } catch (final IOException e) {
+            LOG.warn("Unable to replay metric spool!", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // waits until every request is answered, requests still waiting after the timeout are spooled if possible
+    @Override
+    public boolean close(final Duration timeout) {
+        closing = true;
+        lock.lock();
+        try {
+            if (replayScheduler != null) {
+                replayScheduler.shutdownNow();
+            }
+            var remainingNanos = timeout.toNanos();
+            while (inFlight > 0 || retrying > 0 || !pending.isEmpty()) {
+                if (remainingNanos <= 0) {
+                    abandonPending();
+                    return false;
+                }
+                remainingNanos = idle.awaitNanos(remainingNanos);
+            }
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandonPending();
+            return false;
+        } finally {
+            lock.unlock();
+            final var currentSpool = spool;
+            if (currentSpool != null) {
+                currentSpool.close();
+            }
+        }
+    }
+
+    private void abandonPending() {
+        LOG.warn("{} requests to cloudwatch still pending, {} in flight and {} waiting for retry on close!",
+                 pending.size(),
+                 inFlight,
+                 retrying);
+        for (var pendingRequest = pending.pollFirst(); pendingRequest != null; pendingRequest = pending.pollFirst()) {
+            keepUndelivered(pendingRequest.request());
+            pendingRequest.completion().complete(null);
+        }
+    }
+
+    private void signalIfIdle() {
+        if (inFlight == 0 && retrying == 0 && pending.isEmpty()) {
+            idle.signalAll();
+        }
+    }
+
+    // retries go first, they kept their place in the bounded window while waiting, so they never exceed it
+    private void retry(final PendingRequest pendingRequest) {
+        lock.lock();
+        try {
+            retrying--;
+            pending.addFirst(new PendingRequest(pendingRequest.request(),
+                                                pendingRequest.completion(),
+                                                pendingRequest.attempt() + 1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void keepUndelivered(final PutMetricDataRequest request) {
+        final var currentSpool = spool;
+        if (currentSpool != null) {
+            try {
+                currentSpool.append(request);
+                return;
+            } catch (final IOException e) {
+                LOG.warn("Unable to append to metric spool, keep request in memory!", e);
+            }
+        }
+        lock.lock();
+        try {
+            final var undeliveredDatums = undelivered.computeIfAbsent(request.namespace(), key -> new ArrayList<>());
+            final var kept = Math.min(request.metricData().size(), MAX_UNDELIVERED_DATUMS - undeliveredDatums.size());
+            undeliveredDatums.addAll(request.metricData().subList(0, kept));
+            if (kept < request.metricData().size()) {
+                droppedDatums.add(request.metricData().size() - kept);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // full jitter (https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/)
+    private long backoffNanos(final int attempt) {
+        final var maxBackoffNanos = Math.min(retryMaxDelay.toNanos(),
+                                             retryBaseDelay.toNanos() << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(maxBackoffNanos + 1);
+    }
+
+    private static boolean isThrottling(final Throwable throwable) {
+        return throwable instanceof final SdkServiceException e && e.isThrottlingException();
+    }
+
+    private static boolean isRetryable(final Throwable throwable) {
+        return throwable instanceof SdkClientException || throwable instanceof final SdkServiceException e
+                                                          && (e.isThrottlingException() || e.statusCode() >= 500);
+    }
+
+    List<List<MetricDatum>> chunk(final String namespace, final List<MetricDatum> metricDatums) {
+        final var chunks = new ArrayList<List<MetricDatum>>();
+        final var emptyRequestBytes = REQUEST_OVERHEAD_BYTES + encodedLength(namespace);
+
+        var chunk = new ArrayList<MetricDatum>();
+        var chunkBytes = emptyRequestBytes;
+        for (final var metricDatum : metricDatums) {
+            final var datumBytes = estimateSize(metricDatum);
+            if (!chunk.isEmpty()
+                && (chunk.size() == MAX_DATUMS_PER_REQUEST || chunkBytes + datumBytes > MAX_REQUEST_BYTES)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = emptyRequestBytes;
+            }
+            chunk.add(metricDatum);
+            chunkBytes += datumBytes;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // upper bound of the form encoded size, which is larger than the json and cbor encodings
+    static int estimateSize(final MetricDatum metricDatum) {
+        var bytes = FIELD_PREFIX_BYTES + "MetricName=".length() + encodedLength(metricDatum.metricName());
+        if (metricDatum.unitAsString() != null) {
+            bytes += FIELD_PREFIX_BYTES + "Unit=".length() + metricDatum.unitAsString().length();
+        }
+        if (metricDatum.value() != null) {
+            bytes += FIELD_PREFIX_BYTES + "Value=".length() + NUMBER_BYTES;
+        }
+        if (metricDatum.timestamp() != null) {
+            bytes += FIELD_PREFIX_BYTES + "Timestamp=".length() + NUMBER_BYTES;
+        }
+        if (metricDatum.storageResolution() != null) {
+            bytes += FIELD_PREFIX_BYTES + "StorageResolution=".length() + NUMBER_BYTES;
+        }
+        if (metricDatum.statisticValues() != null) {
+            bytes += 4 * (FIELD_PREFIX_BYTES + "StatisticValues.SampleCount=".length() + NUMBER_BYTES);
+        }
+        for (final var dimension : metricDatum.dimensions()) {
+            bytes += 2 * (FIELD_PREFIX_BYTES + "Dimensions".length() + MEMBER_PREFIX_BYTES + ".Value".length());
+            bytes += encodedLength(dimension.name()) + encodedLength(dimension.value());
+        }
+        bytes += metricDatum.values().size() * (FIELD_PREFIX_BYTES + "Values".length() + MEMBER_PREFIX_BYTES
+                                                + NUMBER_BYTES);
+        bytes += metricDatum.counts().size() * (FIELD_PREFIX_BYTES + "Counts".length() + MEMBER_PREFIX_BYTES
+                                                + NUMBER_BYTES);
+        return bytes;
+    }
+
+    private static int encodedLength(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        var length = 0;
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || "-_.~".indexOf(c) >= 0) {
+                length += 1;
+            } else if (c < 0x80) {
+                // percent encoded
+                length += 3;
+            } else {
+                // up to three percent encoded utf-8 bytes
+                length += 9;
+            }
+        }
+        return length;
+    }
+
+    long getDroppedRequests() {
+        return droppedRequests.sum();
+    }
+
+    @Override
+    public long getDroppedDatums() {
+        final var currentSpool = spool;
+        return droppedDatums.sum() + (currentSpool == null ? 0 : currentSpool.getDroppedDatums());
+    }
+
+    int getUndeliveredDatums() {
+        lock.lock();
+        try {
+            return undelivered.values().stream().mapToInt(List::size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        isTrue(maxConcurrentRequests > 0, "Max concurrent requests must be positive!");
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    void setMaxPendingRequests(final int maxPendingRequests) {
+        isTrue(maxPendingRequests > 0, "Max pending requests must be positive!");
+        this.maxPendingRequests = maxPendingRequests;
+    }
+
+    void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        notNull(overflowPolicy, "Overflow policy must not be null!");
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    void setOverflowBlockTimeout(final Duration overflowBlockTimeout) {
+        notNull(overflowBlockTimeout, "Overflow block timeout must not be null!");
+        this.overflowBlockTimeout = overflowBlockTimeout;
+    }
+
+    void setMaxRetries(final int maxRetries) {
+        isTrue(maxRetries >= 0, "Max retries must not be negative!");
+        this.maxRetries = maxRetries;
+    }
+
+    void setRetryBaseDelay(final Duration retryBaseDelay) {
+        notNull(retryBaseDelay, "Retry base delay must not be null!");
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    void setRetryMaxDelay(final Duration retryMaxDelay) {
+        notNull(retryMaxDelay, "Retry max delay must not be null!");
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    void setMaxRequestsPerSecond(final double maxRequestsPerSecond) {
+        rateLimiter.setMaxRequestsPerSecond(maxRequestsPerSecond);
+    }
+
+    void setSpool(final MetricSpool spool) {
+        this.spool = spool;
+    }
+
+    private record PendingRequest(PutMetricDataRequest request, CompletableFuture<Void> completion, int attempt) {
+    }
+}
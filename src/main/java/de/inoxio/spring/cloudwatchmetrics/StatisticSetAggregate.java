@@ -0,0 +1,38 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+final class StatisticSetAggregate implements MetricAggregate {
+
+    private final LongAdder sampleCount = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAccumulator minimum = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator maximum = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    @Override
+    public void record(final double value) {
+        sampleCount.increment();
+        sum.add(value);
+        minimum.accumulate(value);
+        maximum.accumulate(value);
+    }
+
+    @Override
+    public void addMetricDatums(final MetricIdentity identity,
+                                final Instant timestamp,
+                                final List<MetricDatum> metricDatums) {
+        final var statisticSet = StatisticSet.builder()
+                                             .sampleCount(sampleCount.doubleValue())
+                                             .sum(sum.sum())
+                                             .minimum(minimum.get())
+                                             .maximum(maximum.get())
+                                             .build();
+        metricDatums.add(identity.metricDatumBuilder(timestamp).statisticValues(statisticSet).build());
+    }
+}
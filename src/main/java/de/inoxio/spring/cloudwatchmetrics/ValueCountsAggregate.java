@@ -0,0 +1,78 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+// Every distinct value with its count in primitive arrays, up to the values of one datum. Beyond that the series has
+// too many distinct values to send them exactly, e.g. latencies, and everything is counted in histogram buckets.
+final class ValueCountsAggregate implements MetricAggregate {
+
+    // cloudwatch accepts at most 150 distinct values per datum
+    static final int MAX_VALUES_PER_DATUM = 150;
+
+    private static final int INITIAL_VALUES = 4;
+
+    private final double histogramRelativeError;
+    private double[] values = new double[INITIAL_VALUES];
+    private long[] counts = new long[INITIAL_VALUES];
+    private int size;
+    private HistogramAggregate histogram;
+
+    ValueCountsAggregate(final double histogramRelativeError) {
+        this.histogramRelativeError = histogramRelativeError;
+    }
+
+    @Override
+    public synchronized void record(final double value) {
+        // cloudwatch rejects non finite values
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        if (histogram != null) {
+            histogram.record(value);
+            return;
+        }
+        for (var i = 0; i < size; i++) {
+            if (values[i] == value) {
+                counts[i]++;
+                return;
+            }
+        }
+        if (size == MAX_VALUES_PER_DATUM) {
+            histogram = new HistogramAggregate(histogramRelativeError);
+            for (var i = 0; i < size; i++) {
+                histogram.record(values[i], counts[i]);
+            }
+            histogram.record(value);
+            values = null;
+            counts = null;
+            return;
+        }
+        if (size == values.length) {
+            final var length = Math.min(MAX_VALUES_PER_DATUM, size * 2);
+            values = Arrays.copyOf(values, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        values[size] = value;
+        counts[size++] = 1;
+    }
+
+    @Override
+    public synchronized void addMetricDatums(final MetricIdentity identity,
+                                             final Instant timestamp,
+                                             final List<MetricDatum> metricDatums) {
+        if (histogram != null) {
+            histogram.addMetricDatums(identity, timestamp, metricDatums);
+            return;
+        }
+        if (size == 0) {
+            return;
+        }
+        metricDatums.add(identity.metricDatumBuilder(timestamp)
+                                 .values(Arrays.stream(values, 0, size).boxed().toList())
+                                 .counts(Arrays.stream(counts, 0, size).mapToObj(count -> (double) count).toList())
+                                 .build());
+    }
+}
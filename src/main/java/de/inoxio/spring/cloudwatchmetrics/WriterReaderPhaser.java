@@ -0,0 +1,47 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Wait-free writers, blocking reader. Writers wrap their updates into enter/exit, the reader swaps the data
+// structure the writers use and then flips the phase, which returns once every writer of the old phase has left.
+// Follows the WriterReaderPhaser of HdrHistogram (http://stuff-gil-writes.blogspot.com/2014/11/writerreaderphaser-story-about-new.html)
+final class WriterReaderPhaser {
+
+    private final AtomicLong startEpoch = new AtomicLong(0);
+    private final AtomicLong evenEndEpoch = new AtomicLong(0);
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+    private final ReentrantLock readerLock = new ReentrantLock();
+
+    long writerCriticalSectionEnter() {
+        return startEpoch.getAndIncrement();
+    }
+
+    void writerCriticalSectionExit(final long criticalValueAtEnter) {
+        (criticalValueAtEnter < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+    }
+
+    void readerLock() {
+        readerLock.lock();
+    }
+
+    void readerUnlock() {
+        readerLock.unlock();
+    }
+
+    void flipPhase() {
+        if (!readerLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Phase can only be flipped while holding the reader lock!");
+        }
+
+        final var nextPhaseIsEven = startEpoch.get() < 0;
+        final var initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+
+        final var startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        final var previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousEndEpoch.get() != startValueAtFlip) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveRateLimiterTest {
+
+    @Test
+    void shouldAllowBurstOfOneSecond() {
+
+        // given
+        final var nanoClock = new AtomicLong();
+        final var rateLimiter = new AdaptiveRateLimiter(nanoClock::get);
+        rateLimiter.setMaxRequestsPerSecond(10);
+
+        // when
+        for (var i = 0; i < 10; i++) {
+            assertThat(rateLimiter.reserve()).as("Burst request was delayed.").isZero();
+        }
+        final var delay = rateLimiter.reserve();
+
+        // then
+        assertThat(delay).as("Request above burst was not delayed.").isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void shouldHalveRateOnThrottling() {
+
+        // given
+        final var nanoClock = new AtomicLong();
+        final var rateLimiter = new AdaptiveRateLimiter(nanoClock::get);
+        rateLimiter.setMaxRequestsPerSecond(10);
+
+        // when
+        rateLimiter.onThrottled();
+        final var delay = rateLimiter.reserve();
+
+        // then
+        assertThat(rateLimiter.getRate()).as("Rate was not halved.").isEqualTo(5);
+        assertThat(delay).as("Burst was not stopped.").isEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void shouldRaiseRateOnSuccessUpToMaximum() {
+
+        // given
+        final var rateLimiter = new AdaptiveRateLimiter(new AtomicLong()::get);
+        rateLimiter.setMaxRequestsPerSecond(10);
+        rateLimiter.onThrottled();
+        rateLimiter.onThrottled();
+
+        // when
+        rateLimiter.onSuccess();
+        final var raisedRate = rateLimiter.getRate();
+        for (var i = 0; i < 20; i++) {
+            rateLimiter.onSuccess();
+        }
+
+        // then
+        assertThat(raisedRate).as("Rate was not raised.").isEqualTo(3.5);
+        assertThat(rateLimiter.getRate()).as("Rate exceeds maximum.").isEqualTo(10);
+    }
+
+    @Test
+    void shouldNotGoBelowOneRequestPerSecond() {
+
+        // given
+        final var rateLimiter = new AdaptiveRateLimiter(new AtomicLong()::get);
+
+        // when
+        for (var i = 0; i < 20; i++) {
+            rateLimiter.onThrottled();
+        }
+
+        // then
+        assertThat(rateLimiter.getRate()).as("Rate dropped below minimum.").isEqualTo(1);
+    }
+}
@@ -0,0 +1,492 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
+import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.ThrowableAssert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+class BufferedCloudwatchDAOTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldNotPutMetricsBeforeFlush() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.setNamespace("someNamespace");
+
+        // when
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+
+        // then
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void shouldAggregateMetricsByNameOnFlush() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.setNamespace("someNamespace");
+        bufferedDAO.addDimension(dimensionKeyPairBuilder().name("someDimension").value("dimensionValue").build());
+
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build(),
+                                metricKeyPairBuilder().name("otherMetric").value(1).build());
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(20).build());
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+
+        final var request = captor.getValue();
+        assertThat(request.namespace()).as("Request does not contain the correct namespace").isEqualTo("someNamespace");
+        assertThat(request.metricData()).as("Buffered metrics were not aggregated by name.")
+                                        .extracting(MetricDatum::metricName, MetricDatum::values, MetricDatum::counts)
+                                        .containsExactlyInAnyOrder(tuple("somePrefixsomeMetric",
+                                                                         List.of(10.0, 20.0),
+                                                                         List.of(2.0, 1.0)),
+                                                                   tuple("somePrefixotherMetric",
+                                                                         List.of(1.0),
+                                                                         List.of(1.0)));
+        assertThat(request.metricData()).as("Dimension name and value is incorrect.")
+                                        .flatExtracting(MetricDatum::dimensions)
+                                        .extracting(Dimension::name, Dimension::value)
+                                        .containsOnly(tuple("someDimension", "dimensionValue"));
+    }
+
+    @Test
+    void shouldSeparateMetricsByMetricDimensions() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        final var someEndpoint = List.of(dimensionKeyPairBuilder().name("Endpoint").value("/some").build());
+        final var otherEndpoint = List.of(dimensionKeyPairBuilder().name("Endpoint").value("/other").build());
+
+        bufferedDAO.pushMetrics(someEndpoint, metricKeyPairBuilder().name("someMetric").value(1).build());
+        bufferedDAO.pushMetrics(someEndpoint, metricKeyPairBuilder().name("someMetric").value(1).build());
+        bufferedDAO.pushMetrics(otherEndpoint, metricKeyPairBuilder().name("someMetric").value(1).build());
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Metrics were not separated by their dimensions.")
+                                                  .extracting(metricDatum -> metricDatum.dimensions().get(0).value(),
+                                                              MetricDatum::counts)
+                                                  .containsExactlyInAnyOrder(tuple("/some", List.of(2.0)),
+                                                                             tuple("/other", List.of(1.0)));
+    }
+
+    @Test
+    void shouldCountDroppedSeries() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.setMaxSeries(1);
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(1).build(),
+                                metricKeyPairBuilder().name("otherMetric").value(1).build(),
+                                metricKeyPairBuilder().name("thirdMetric").value(1).build());
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Dropped series were not counted.")
+                                                  .filteredOn(MetricDatum::metricName,
+                                                              "somePrefix" + BufferedCloudwatchDAO.DROPPED_SERIES_METRIC)
+                                                  .extracting(MetricDatum::value)
+                                                  .containsExactly(2.0);
+    }
+
+    @Test
+    void shouldRecordValuesIntoHistogram() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        for (var i = 0; i < 1000; i++) {
+            bufferedDAO.recordValue("someLatency", 100 + i % 2);
+        }
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Recorded values were not collapsed into histogram buckets.")
+                                                  .singleElement()
+                                                  .satisfies(metricDatum -> assertThat(metricDatum.counts()).containsExactly(
+                                                          1000.0));
+    }
+
+    @Test
+    void shouldFlushRegisteredMeters() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+
+        final var counter = bufferedDAO.counter("someCounter");
+        counter.increment();
+        counter.increment(2);
+        bufferedDAO.gauge("someGauge").set(5);
+        bufferedDAO.timer("someTimer").record(Duration.ofMillis(20));
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Meters were not flushed.")
+                                                  .extracting(MetricDatum::metricName, MetricDatum::value)
+                                                  .containsExactlyInAnyOrder(tuple("somePrefixsomeCounter", 3.0),
+                                                                             tuple("somePrefixsomeGauge", 5.0),
+                                                                             tuple("somePrefixsomeTimer", null));
+    }
+
+    @Test
+    void shouldUseConfiguredRelativeErrorForHistogramTimers() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setHistogramRelativeError(0.2);
+        final var timer = bufferedDAO.timer("someTimer", StandardUnit.MILLISECONDS, MetricAggregation.HISTOGRAM);
+        timer.record(Duration.ofMillis(100));
+        timer.record(Duration.ofMillis(110));
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Timer did not use configured relative error.")
+                                                  .singleElement()
+                                                  .satisfies(metricDatum -> assertThat(metricDatum.counts())
+                                                          .containsExactly(2.0));
+    }
+
+    @Test
+    void shouldRejectZeroFlushInterval() {
+
+        // given
+        final var bufferedDAO = new BufferedCloudwatchDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = () -> bufferedDAO.setFlushInterval(Duration.ZERO);
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable)
+                                                                 .withMessage("Flush interval must be at least 1 ms!");
+    }
+
+    @Test
+    void shouldRejectSubMillisecondHighResolutionFlushInterval() {
+
+        // given
+        final var bufferedDAO = new BufferedCloudwatchDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable =
+                () -> bufferedDAO.setHighResolutionFlushInterval(Duration.ofNanos(10));
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldReturnSameMeterForSameName() {
+
+        // given
+        final var bufferedDAO = new BufferedCloudwatchDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+
+        // when
+        final var counter = bufferedDAO.counter("someCounter");
+
+        // then
+        assertThat(bufferedDAO.counter("someCounter")).as("Counter was registered twice.").isSameAs(counter);
+    }
+
+    @Test
+    void shouldNotRegisterMeterOfOtherTypeWithSameName() {
+
+        // given
+        final var bufferedDAO = new BufferedCloudwatchDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        bufferedDAO.counter("someMeter");
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = () -> bufferedDAO.timer("someMeter");
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldNotRegisterMeterWithOtherUnitWithSameName() {
+
+        // given
+        final var bufferedDAO = new BufferedCloudwatchDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        bufferedDAO.gauge("someMeter", StandardUnit.BYTES);
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = () -> bufferedDAO.gauge("someMeter", StandardUnit.COUNT);
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldSeparateRecordedValuesByUnit() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.recordValue("someSize", 10, StandardUnit.BYTES);
+        bufferedDAO.recordValue("someSize", 20, StandardUnit.KILOBYTES);
+        bufferedDAO.gauge("someGauge", StandardUnit.PERCENT).set(50);
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Units were not kept per series.")
+                                                  .extracting(MetricDatum::metricName, MetricDatum::unit)
+                                                  .containsExactlyInAnyOrder(tuple("somePrefixsomeSize",
+                                                                                   StandardUnit.BYTES),
+                                                                             tuple("somePrefixsomeSize",
+                                                                                   StandardUnit.KILOBYTES),
+                                                                             tuple("somePrefixsomeGauge",
+                                                                                   StandardUnit.PERCENT));
+    }
+
+    @Test
+    void shouldWriteFlushedMetricsToConfiguredTransports() throws IOException {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        final var file = directory.resolve("metrics.log");
+        final var inMemoryTransport = new InMemoryMetricTransport();
+        bufferedDAO.setTransports(List.of(MetricTransportType.EMF),
+                                  file.toString(),
+                                  DataSize.ofKilobytes(64),
+                                  new StaticListableBeanFactory(Map.of("inMemoryTransport", inMemoryTransport))
+                                          .getBeanProvider(MetricTransport.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.setNamespace("someNamespace");
+        bufferedDAO.counter("someCounter").increment(3);
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var documents = EmfWriterTest.documents(Files.readString(file));
+        assertThat(documents).as("Flush was not written as one document.").hasSize(1);
+        assertThat(documents.get(0).at("/somePrefixsomeCounter").asDouble()).as("Counter is incorrect.")
+                                                                             .isEqualTo(3.0);
+        assertThat(inMemoryTransport.getMetricDatums()).as("Custom transport was not used.")
+                                                       .extracting(MetricDatum::metricName)
+                                                       .containsExactly("somePrefixsomeCounter");
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void shouldUseSameMetricNamesForPutMetricDataAndEmf() throws IOException {
+
+        // given
+        final var bufferedDAO = new BufferedCloudwatchDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        final var file = directory.resolve("metrics.log");
+        final var inMemoryTransport = new InMemoryMetricTransport(true);
+        bufferedDAO.setTransports(List.of(MetricTransportType.EMF),
+                                  file.toString(),
+                                  DataSize.ofKilobytes(64),
+                                  new StaticListableBeanFactory(Map.of("inMemoryTransport", inMemoryTransport))
+                                          .getBeanProvider(MetricTransport.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.setNamespace("someNamespace");
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+        bufferedDAO.counter("someCounter").increment(3);
+        bufferedDAO.gauge("someGauge").set(0.5);
+        for (final var aggregation : List.of(MetricAggregation.STATISTIC_SET, MetricAggregation.HISTOGRAM)) {
+            final var timer = bufferedDAO.timer(aggregation.name(), StandardUnit.MILLISECONDS, aggregation);
+            timer.record(Duration.ofMillis(10));
+            timer.record(Duration.ofMillis(20));
+        }
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        final var emfNames = EmfWriterTest.documents(Files.readString(file))
+                                          .stream()
+                                          .flatMap(document -> document.at("/_aws/CloudWatchMetrics/0/Metrics")
+                                                                       .valueStream())
+                                          .map(metric -> metric.at("/Name").asText())
+                                          .toList();
+        assertThat(emfNames).as("EMF metric names differ from put metric data.")
+                            .containsExactlyInAnyOrderElementsOf(inMemoryTransport.getMetricDatums()
+                                                                                  .stream()
+                                                                                  .map(MetricDatum::metricName)
+                                                                                  .toList())
+                            .contains("somePrefixsomeMetric", "somePrefixHISTOGRAM", "somePrefixSTATISTIC_SET");
+    }
+
+    @Test
+    void shouldNotPutMetricsOnFlushWhenBufferIsEmpty() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+
+        // when
+        bufferedDAO.flush();
+
+        // then
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void shouldFlushHighResolutionMetricsInOwnWindow() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.setNamespace("someNamespace");
+        bufferedDAO.setHighResolutionMetrics(Set.of("fastMetric", "fastCounter"));
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("fastMetric").value(1).build(),
+                                metricKeyPairBuilder().name("slowMetric").value(2).build());
+        bufferedDAO.counter("fastCounter").increment();
+        bufferedDAO.counter("slowCounter").increment();
+
+        // when
+        bufferedDAO.flushHighResolution();
+        bufferedDAO.flush();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should(times(2)).putMetricData(captor.capture());
+
+        assertThat(captor.getAllValues().get(0).metricData()).as("High resolution window is incorrect.")
+                                                             .extracting(MetricDatum::metricName,
+                                                                         MetricDatum::storageResolution)
+                                                             .containsExactlyInAnyOrder(
+                                                                     tuple("somePrefixfastMetric", 1),
+                                                                     tuple("somePrefixfastCounter", 1));
+        assertThat(captor.getAllValues().get(1).metricData()).as("Standard window is incorrect.")
+                                                             .extracting(MetricDatum::metricName,
+                                                                         MetricDatum::storageResolution)
+                                                             .containsExactlyInAnyOrder(
+                                                                     tuple("somePrefixslowMetric", null),
+                                                                     tuple("somePrefixslowCounter", null));
+    }
+
+    @Test
+    void shouldFlushRemainingMetricsOnStop() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.startFlushing();
+        bufferedDAO.start();
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+
+        // when
+        bufferedDAO.stop();
+
+        // then
+        then(cloudWatchClient).should().putMetricData(any(PutMetricDataRequest.class));
+    }
+
+    @Test
+    void shouldNotRecordMetricsAfterStop() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var bufferedDAO = new BufferedCloudwatchDAO(cloudWatchClient, mock(ObjectMapper.class));
+        bufferedDAO.setMetricPrefix("somePrefix");
+        bufferedDAO.start();
+        bufferedDAO.stop();
+
+        // when
+        bufferedDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+        bufferedDAO.recordValue("otherMetric", 10);
+        bufferedDAO.flush();
+
+        // then
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+}
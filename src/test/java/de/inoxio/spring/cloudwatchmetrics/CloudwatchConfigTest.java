@@ -2,21 +2,138 @@ package de.inoxio.spring.cloudwatchmetrics;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.net.URI;
 import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
 
 class CloudwatchConfigTest {
 
+    private final ApplicationContextRunner contextRunner =
+     new ApplicationContextRunner().withUserConfiguration(CloudwatchConfig.class);
+
     @Test
     void shouldCreateCorrectCloudwatchClientBean() {
 
         // given
         final var appConfig = new CloudwatchConfig();
+        final var clientProperties = new CloudwatchClientProperties();
 
         // when
-        final var cloudWatchClient = appConfig.cloudWatchClient();
+        try (var httpClient = NettyNioAsyncHttpClient.create();
+             var cloudWatchClient = appConfig.cloudWatchClient(clientProperties, httpClient)) {
+
+            // then
+            assertThat(cloudWatchClient).as("Cloud watch client is null.").isNotNull();
+            assertThat(cloudWatchClient.serviceClientConfiguration().region()).as("Default region is not used.")
+                                                                              .isEqualTo(Region.EU_CENTRAL_1);
+        }
+    }
+
+    @Test
+    void shouldCreateNettyHttpClientByDefault() {
+
+        // when
+        contextRunner.run(context -> {
+
+            // then
+            assertThat(context.getBean(CloudwatchConfig.HTTP_CLIENT_BEAN, SdkAsyncHttpClient.class))
+             .as("Default http client is not netty.")
+             .isInstanceOf(NettyNioAsyncHttpClient.class);
+        });
+    }
+
+    @Test
+    void shouldConfigureCloudwatchClientFromProperties() {
+
+        // when
+        contextRunner.withPropertyValues("aws.client.region=us-east-1",
+                                         "aws.client.endpoint-override=http://localhost:4566",
+                                         "aws.client.max-concurrency=8",
+                                         "aws.client.connection-acquisition-timeout=PT2S",
+                                         "aws.client.read-timeout=PT5S")
+                     .run(context -> {
+
+                         // then
+                         final var configuration = context.getBean(CloudWatchAsyncClient.class)
+                                                          .serviceClientConfiguration();
+                         assertThat(configuration.region()).as("Region is not configured.")
+                                                           .isEqualTo(Region.US_EAST_1);
+                         assertThat(configuration.endpointOverride()).as("Endpoint override is not configured.")
+                                                                     .contains(URI.create("http://localhost:4566"));
+                         assertThat(context.getBean(CloudwatchClientProperties.class)
+                                           .getMaxConcurrency()).as("Max concurrency is not bound.").isEqualTo(8);
+                     });
+    }
+
+    @Test
+    void shouldCreateCrtHttpClientWhenConfigured() {
+
+        // when
+        contextRunner.withPropertyValues("aws.client.http-client=crt", "aws.client.max-concurrency=8")
+                     .run(context -> {
+
+                         // then
+                         assertThat(context.getBean(CloudwatchConfig.HTTP_CLIENT_BEAN, SdkAsyncHttpClient.class))
+                          .as("Configured http client is not crt.")
+                          .isInstanceOf(AwsCrtAsyncHttpClient.class);
+                     });
+    }
+
+    @Test
+    void shouldNameMissingCrtDependency() {
+
+        // when
+        contextRunner.withClassLoader(new FilteredClassLoader(AwsCrtAsyncHttpClient.class))
+                     .withPropertyValues("aws.client.http-client=crt")
+                     .run(context -> {
+
+                         // then
+                         assertThat(context).hasFailed();
+                         assertThat(context.getStartupFailure()).as("Missing dependency is not named.")
+                                                                .rootCause()
+                                                                .isInstanceOf(IllegalStateException.class)
+                                                                .hasMessageContaining("aws-crt-client");
+                     });
+    }
+
+    @Test
+    void shouldShareEventLoopGroupBean() {
+
+        // given
+        final var eventLoopGroup = SdkEventLoopGroup.builder().numberOfThreads(1).build();
+
+        // when
+        contextRunner.withBean(SdkEventLoopGroup.class, () -> eventLoopGroup)
+                     .run(context -> assertThat(context).hasSingleBean(CloudWatchAsyncClient.class));
 
         // then
-        assertThat(cloudWatchClient).as("Cloud watch client is null.").isNotNull();
+        assertThat(eventLoopGroup.eventLoopGroup().isShuttingDown()).as("Shared event loop group was shut down.")
+                                                                    .isFalse();
+        eventLoopGroup.eventLoopGroup().shutdownGracefully();
+    }
+
+    @Test
+    void shouldKeepHttpClientBeanOfTheApplication() {
+
+        // given
+        final var httpClient = NettyNioAsyncHttpClient.create();
+
+        // when
+        contextRunner.withBean(CloudwatchConfig.HTTP_CLIENT_BEAN, SdkAsyncHttpClient.class, () -> httpClient)
+                     .run(context -> {
+
+                         // then
+                         assertThat(context.getBean(CloudwatchConfig.HTTP_CLIENT_BEAN, SdkAsyncHttpClient.class))
+                          .as("Http client of the application is replaced.")
+                          .isSameAs(httpClient);
+                     });
     }
 
     @Test
@@ -31,4 +148,4 @@ class CloudwatchConfigTest {
         // then
         assertThat(jackson2ObjectMapperBuilder).as("Jackson mapper is not initialized.").isNotNull();
     }
-}
\ No newline at end of file
+}
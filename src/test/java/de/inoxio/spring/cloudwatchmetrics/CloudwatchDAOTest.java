@@ -0,0 +1,60 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.Test;
+
+class CloudwatchDAOTest {
+
+    @Test
+    void shouldRecordValueWithoutDimensionsThroughPushMetrics() {
+
+        // given
+        final var cloudwatchDAO = new LegacyCloudwatchDAO();
+
+        // when
+        cloudwatchDAO.recordValue("someMetric", 10);
+
+        // then
+        assertThat(cloudwatchDAO.pushedMetrics).as("Value was not pushed.")
+                                               .singleElement()
+                                               .extracting(MetricKeyPair::getName, MetricKeyPair::getValue)
+                                               .containsExactly("someMetric", 10.0);
+    }
+
+    @Test
+    void shouldNotIgnoreDimensionsUnsupportedByImplementation() {
+
+        // given
+        final var cloudwatchDAO = new LegacyCloudwatchDAO();
+        final var dimension = dimensionKeyPairBuilder().name("someName").value("someValue").build();
+
+        // when
+        final ThrowingCallable callable = () -> cloudwatchDAO.recordValue("someMetric", 10, dimension);
+
+        // then
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(callable);
+        assertThat(cloudwatchDAO.pushedMetrics).as("Value was pushed without its dimensions.").isEmpty();
+    }
+
+    // implements only the methods of the 2.0 interface
+    private static class LegacyCloudwatchDAO implements CloudwatchDAO {
+
+        private final List<MetricKeyPair> pushedMetrics = new ArrayList<>();
+
+        @Override
+        public void addDimension(final DimensionKeyPair... dimensions) {
+        }
+
+        @Override
+        public void pushMetrics(final MetricKeyPair... metrics) {
+            pushedMetrics.addAll(Arrays.asList(metrics));
+        }
+    }
+}
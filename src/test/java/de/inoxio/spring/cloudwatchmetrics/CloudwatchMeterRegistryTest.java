@@ -0,0 +1,211 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+class CloudwatchMeterRegistryTest {
+
+    private static final Duration STEP = Duration.ofMinutes(1);
+
+    @Test
+    void shouldPublishMetersThroughDAO() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        final var clock = new MockClock();
+        final var registry = new CloudwatchMeterRegistry(CloudwatchMeterRegistry.stepRegistryConfig(STEP),
+                                                         cloudwatchRestDAO,
+                                                         clock);
+        registry.counter("requests").increment(3);
+        registry.gauge("memory", Tags.of("area", "heap"), new AtomicInteger(5)).set(5);
+        registry.more().counter("ignored", Tags.empty(), 0);
+        clock.add(STEP);
+
+        // when
+        registry.publish();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().namespace()).as("Namespace of DAO was not used.").isEqualTo("someNamespace");
+        assertThat(captor.getValue().metricData()).as("Meters were not published.")
+                                                  .extracting(MetricDatum::metricName,
+                                                              MetricDatum::value,
+                                                              MetricDatum::unit)
+                                                  .containsExactlyInAnyOrder(tuple("somePrefixrequests",
+                                                                                   3.0,
+                                                                                   StandardUnit.COUNT),
+                                                                             tuple("somePrefixmemory",
+                                                                                   5.0,
+                                                                                   StandardUnit.COUNT),
+                                                                             tuple("somePrefixignored",
+                                                                                   0.0,
+                                                                                   StandardUnit.COUNT));
+    }
+
+    @Test
+    void shouldPublishTimerStatistics() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("");
+        final var clock = new MockClock();
+        final var registry = new CloudwatchMeterRegistry(CloudwatchMeterRegistry.stepRegistryConfig(STEP),
+                                                         cloudwatchRestDAO,
+                                                         clock);
+        final var timer = registry.timer("latency");
+        timer.record(Duration.ofMillis(10));
+        timer.record(Duration.ofMillis(30));
+        clock.add(STEP);
+
+        // when
+        registry.publish();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Timer statistics were not published.")
+                                                  .extracting(MetricDatum::metricName,
+                                                              MetricDatum::value,
+                                                              MetricDatum::unit)
+                                                  .containsExactlyInAnyOrder(tuple("latency.count",
+                                                                                   2.0,
+                                                                                   StandardUnit.COUNT),
+                                                                             tuple("latency.sum",
+                                                                                   40.0,
+                                                                                   StandardUnit.MILLISECONDS),
+                                                                             tuple("latency.avg",
+                                                                                   20.0,
+                                                                                   StandardUnit.MILLISECONDS),
+                                                                             tuple("latency.max",
+                                                                                   30.0,
+                                                                                   StandardUnit.MILLISECONDS));
+    }
+
+    @Test
+    void shouldReplaceGlobalDimensionsWithTags() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("");
+        cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("host").value("global").build(),
+                                       dimensionKeyPairBuilder().name("stage").value("prod").build());
+        final var clock = new MockClock();
+        final var registry = new CloudwatchMeterRegistry(CloudwatchMeterRegistry.stepRegistryConfig(STEP),
+                                                         cloudwatchRestDAO,
+                                                         clock);
+        registry.counter("requests", "host", "tagged").increment();
+        clock.add(STEP);
+
+        // when
+        registry.publish();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Tags were not merged into dimensions.")
+                                                  .flatExtracting(MetricDatum::dimensions)
+                                                  .containsExactlyInAnyOrder(dimension("stage", "prod"),
+                                                                             dimension("host", "tagged"));
+    }
+
+    @Test
+    void shouldDropTaggedSeriesAboveCardinalityLimit() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("");
+        cloudwatchRestDAO.setMaxSeries(2);
+        final var clock = new MockClock();
+        final var registry = new CloudwatchMeterRegistry(CloudwatchMeterRegistry.stepRegistryConfig(STEP),
+                                                         cloudwatchRestDAO,
+                                                         clock);
+        for (final var user : List.of("a", "b", "c")) {
+            registry.counter("requests", "user", user).increment();
+        }
+        clock.add(STEP);
+
+        // when
+        registry.publish();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Series above limit were not dropped and counted.")
+                                                  .extracting(MetricDatum::metricName, MetricDatum::value)
+                                                  .containsExactlyInAnyOrder(tuple("requests", 1.0),
+                                                                             tuple("requests", 1.0),
+                                                                             tuple("DroppedSeries", 1.0));
+        assertThat(cloudwatchRestDAO.getDroppedSeries()).as("Dropped series were not counted.").isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotPublishValuesThatAreNotFinite() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        final var clock = new MockClock();
+        final var registry = new CloudwatchMeterRegistry(CloudwatchMeterRegistry.stepRegistryConfig(STEP),
+                                                         cloudwatchRestDAO,
+                                                         clock);
+        registry.gauge("collected", Tags.empty(), new Object(), object -> Double.NaN);
+        clock.add(STEP);
+
+        // when
+        registry.publish();
+
+        // then
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void shouldMapBaseUnits() {
+
+        // when
+        final var bytes = CloudwatchMeterRegistry.standardUnit("bytes");
+        final var threads = CloudwatchMeterRegistry.standardUnit("threads");
+
+        // then
+        assertThat(bytes).as("Bytes were not mapped.").isEqualTo(StandardUnit.BYTES);
+        assertThat(threads).as("Unknown unit was not counted.").isEqualTo(StandardUnit.COUNT);
+    }
+
+    private static Dimension dimension(final String name, final String value) {
+        return Dimension.builder().name(name).value(value).build();
+    }
+}
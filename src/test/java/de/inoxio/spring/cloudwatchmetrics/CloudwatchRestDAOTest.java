@@ -1,16 +1,12 @@
 package de.inoxio.spring.cloudwatchmetrics;
 
-import static de.inoxio.spring.cloudwatchmetrics.AnnotationDTO.AnnotationBuilder.annotionBuilder;
-import static de.inoxio.spring.cloudwatchmetrics.AnnotationsDTO.AnnotationsBuilder.annotationsBuilder;
 import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
-import static de.inoxio.spring.cloudwatchmetrics.MetricDTO.MetricBuilder.metricBuilder;
 import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
-import static de.inoxio.spring.cloudwatchmetrics.PropertyDTO.PropertyBuilder.propertyBuilder;
-import static de.inoxio.spring.cloudwatchmetrics.WidgetDTO.WidgetBuilder.widgetBuilder;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.BDDMockito.willDoNothing;
@@ -18,28 +14,36 @@ import static org.mockito.BDDMockito.willReturn;
 import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 
-import java.io.IOException;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.assertj.core.api.ThrowableAssert;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.DashboardEntry;
 import software.amazon.awssdk.services.cloudwatch.model.DashboardValidationMessage;
 import software.amazon.awssdk.services.cloudwatch.model.Dimension;
 import software.amazon.awssdk.services.cloudwatch.model.GetDashboardRequest;
 import software.amazon.awssdk.services.cloudwatch.model.GetDashboardResponse;
+import software.amazon.awssdk.services.cloudwatch.model.ListDashboardsRequest;
+import software.amazon.awssdk.services.cloudwatch.model.ListDashboardsResponse;
 import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
 import software.amazon.awssdk.services.cloudwatch.model.PutDashboardRequest;
 import software.amazon.awssdk.services.cloudwatch.model.PutDashboardResponse;
 import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
 import software.amazon.awssdk.services.cloudwatch.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
 
@@ -114,6 +118,273 @@ class CloudwatchRestDAOTest {
                 .containsExactly(tuple("someDimension", "dimensionValue"));
     }
 
+    @Test
+    void shouldPutMetricsToCloudwatchWithMetricDimension() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest())).willReturn(CompletableFuture.completedFuture(
+                null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("someDimension").value("dimensionValue").build());
+
+        // when
+        cloudwatchRestDAO.pushMetrics(List.of(dimensionKeyPairBuilder().name("Endpoint").value("/some").build()),
+                                      metricKeyPairBuilder().name("someMetric").value(10).build());
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Dimension name and value is incorrect.")
+                                                  .flatExtracting(MetricDatum::dimensions)
+                                                  .extracting(Dimension::name, Dimension::value)
+                                                  .containsExactly(tuple("someDimension", "dimensionValue"),
+                                                                   tuple("Endpoint", "/some"));
+    }
+
+    @Test
+    void shouldPutMetricsWithUnit() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+
+        // when
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someDuration").value(Duration.ofSeconds(2)).build(),
+                                      metricKeyPairBuilder().name("someSize").value(3).unit(StandardUnit.BYTES).build());
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Values or units are incorrect.")
+                                                  .extracting(MetricDatum::value, MetricDatum::unit)
+                                                  .containsExactly(tuple(2000.0, StandardUnit.MILLISECONDS),
+                                                                   tuple(3.0, StandardUnit.BYTES));
+    }
+
+    @Test
+    void shouldPutConfiguredMetricsWithHighResolution() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest()))
+                .willReturn(CompletableFuture.completedFuture(null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.setHighResolutionMetrics(Set.of("fastMetric"));
+
+        // when
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("fastMetric").value(1).build(),
+                                      metricKeyPairBuilder().name("slowMetric").value(2).build());
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should().putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Storage resolution is incorrect.")
+                                                  .extracting(MetricDatum::metricName, MetricDatum::storageResolution)
+                                                  .containsExactly(tuple("somePrefixfastMetric", 1),
+                                                                   tuple("somePrefixslowMetric", null));
+    }
+
+    @Test
+    void shouldNotPutMetricsAboveCardinalityLimit() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest())).willReturn(CompletableFuture.completedFuture(
+                null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setMaxSeries(1);
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+
+        // when
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("otherMetric").value(10).build());
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should(times(2)).putMetricData(captor.capture());
+        assertThat(captor.getValue().metricData()).as("Series above the limit was sent.")
+                                                  .extracting(MetricDatum::metricName, MetricDatum::value)
+                                                  .containsExactly(tuple("somePrefixDroppedSeries", 1.0));
+        assertThat(cloudwatchRestDAO.getDroppedSeries()).as("Dropped series was not counted.").isEqualTo(1);
+    }
+
+    @Test
+    void shouldSendDroppedSeriesOnlyOnce() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest())).willReturn(CompletableFuture.completedFuture(
+                null));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setMaxSeries(1);
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build(),
+                                      metricKeyPairBuilder().name("otherMetric").value(10).build(),
+                                      metricKeyPairBuilder().name("thirdMetric").value(10).build());
+
+        // when
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(20).build());
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        then(cloudWatchClient).should(times(2)).putMetricData(captor.capture());
+        assertThat(captor.getAllValues()).as("Dropped series were not sent exactly once.")
+                                         .flatExtracting(PutMetricDataRequest::metricData)
+                                         .extracting(MetricDatum::metricName, MetricDatum::value)
+                                         .containsExactly(tuple("somePrefixsomeMetric", 10.0),
+                                                          tuple("somePrefixDroppedSeries", 2.0),
+                                                          tuple("somePrefixsomeMetric", 20.0));
+    }
+
+    @Test
+    void shouldReplaceDimensionWithSameName() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("someDimension").value("oldValue").build(),
+                                       dimensionKeyPairBuilder().name("otherDimension").value("otherValue").build());
+
+        // when
+        cloudwatchRestDAO.replaceDimension(dimensionKeyPairBuilder().name("someDimension").value("newValue").build(),
+                                           dimensionKeyPairBuilder().name("newDimension").value("value").build());
+
+        // then
+        assertThat(cloudwatchRestDAO.getDimensions()).as("Dimensions were not replaced.")
+                                                     .extracting(Dimension::name, Dimension::value)
+                                                     .containsExactly(tuple("someDimension", "newValue"),
+                                                                      tuple("otherDimension", "otherValue"),
+                                                                      tuple("newDimension", "value"));
+    }
+
+    @Test
+    void shouldRemoveDimension() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("someDimension").value("someValue").build(),
+                                       dimensionKeyPairBuilder().name("otherDimension").value("otherValue").build());
+
+        // when
+        cloudwatchRestDAO.removeDimension("someDimension");
+
+        // then
+        assertThat(cloudwatchRestDAO.getDimensions()).as("Dimension was not removed.")
+                                                     .extracting(Dimension::name)
+                                                     .containsExactly("otherDimension");
+    }
+
+    @Test
+    void shouldNotChangeDimensionsOfSnapshotInUse() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("someDimension").value("someValue").build());
+        final var snapshot = cloudwatchRestDAO.getDimensions();
+
+        // when
+        cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("otherDimension").value("otherValue").build());
+
+        // then
+        assertThat(snapshot).as("Published dimension snapshot was modified.").hasSize(1);
+        assertThat(cloudwatchRestDAO.getDimensions()).as("Dimension was not added.").hasSize(2);
+    }
+
+    @Test
+    void shouldNotLoseConcurrentlyAddedDimensions() throws InterruptedException {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), mock(ObjectMapper.class));
+        final var threads = new Thread[4];
+
+        // when
+        for (var t = 0; t < threads.length; t++) {
+            final var thread = t;
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (var i = 0; i < 100; i++) {
+                    cloudwatchRestDAO.addDimension(dimensionKeyPairBuilder().name("dimension" + thread + "-" + i)
+                                                                            .value("value")
+                                                                            .build());
+                }
+            });
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(cloudwatchRestDAO.getDimensions()).as("Concurrently added dimensions were lost.").hasSize(400);
+    }
+
+    @Test
+    void shouldIgnoreMetricsAfterStop() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.start();
+        cloudwatchRestDAO.stop();
+
+        // when
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+
+        // then
+        assertThat(cloudwatchRestDAO.isRunning()).as("DAO is still running after stop.").isFalse();
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void shouldWaitForOutstandingRequestsOnStop() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var response = new CompletableFuture<PutMetricDataResponse>();
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest())).willReturn(response);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.start();
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)
+                         .execute(() -> response.complete(PutMetricDataResponse.builder().build()));
+
+        // when
+        cloudwatchRestDAO.stop();
+
+        // then
+        assertThat(response).as("Stop did not wait for the outstanding request.").isCompleted();
+    }
+
+    @Test
+    void shouldStopAfterShutdownTimeout() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(anyPutMetricDataRequest())).willReturn(new CompletableFuture<>());
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class));
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.setShutdownTimeout(Duration.ofMillis(10));
+        cloudwatchRestDAO.start();
+        cloudwatchRestDAO.pushMetrics(metricKeyPairBuilder().name("someMetric").value(10).build());
+
+        // when
+        cloudwatchRestDAO.stop();
+
+        // then
+        assertThat(cloudwatchRestDAO.isRunning()).as("DAO is still running after timeout.").isFalse();
+    }
+
     @Test
     void shouldGetDashboardWhenCreatingAnnotations() {
 
@@ -124,7 +395,8 @@ class CloudwatchRestDAOTest {
 
         final var cloudwatchRestDAO = spy(new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class)));
         cloudwatchRestDAO.setDashboardName("someDashboardName");
-        willDoNothing().given(cloudwatchRestDAO).handleGetDashboard(null, null);
+        willReturn(CompletableFuture.completedFuture(null)).given(cloudwatchRestDAO)
+                                                           .handleGetDashboard(any(), any(), any());
 
         // when
         cloudwatchRestDAO.annotateServerStart();
@@ -134,7 +406,7 @@ class CloudwatchRestDAOTest {
         then(cloudWatchClient).should().getDashboard(captor.capture());
         assertThat(captor.getValue().dashboardName()).as("Deshboard name is incorrect.").isEqualTo("someDashboardName");
 
-        then(cloudwatchRestDAO).should().handleGetDashboard(any(), any());
+        then(cloudwatchRestDAO).should().handleGetDashboard(eq("someDashboardName"), any(), any());
     }
 
     @Test
@@ -163,12 +435,12 @@ class CloudwatchRestDAOTest {
                                                                        .build();
 
         // when
-        cloudwatchRestDAO.handleGetDashboard(null, new CompletionException(resourceNotFoundException));
+        cloudwatchRestDAO.handleGetDashboard("someDashboardName", null, new CompletionException(resourceNotFoundException));
 
         // then
         then(cloudwatchRestDAO).should(times(0)).checkAndThrowError(any());
         then(cloudwatchRestDAO).should(times(0)).annotateWidgets(any());
-        then(cloudwatchRestDAO).should(times(0)).updateChangedDashboard(any());
+        then(cloudwatchRestDAO).should(times(0)).updateChangedDashboard(any(), any());
     }
 
     @Test
@@ -181,7 +453,7 @@ class CloudwatchRestDAOTest {
         willThrow(new RuntimeException(testException)).given(cloudwatchRestDAO).checkAndThrowError(testException);
 
         // when
-        final ThrowableAssert.ThrowingCallable callable = () -> cloudwatchRestDAO.handleGetDashboard(null, testException);
+        final ThrowableAssert.ThrowingCallable callable = () -> cloudwatchRestDAO.handleGetDashboard("someDashboardName", null, testException);
 
         // then
         assertThatExceptionOfType(RuntimeException.class)
@@ -194,13 +466,14 @@ class CloudwatchRestDAOTest {
         // given
         final var cloudwatchRestDAO = spy(new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
                                                                 mock(ObjectMapper.class)));
-        willReturn("some widgets").given(cloudwatchRestDAO).annotateWidgets("some widgets");
+        willReturn(new DashboardAnnotator.Annotated("some widgets", false)).given(cloudwatchRestDAO)
+                                                                            .annotateWidgets("some widgets");
 
         // when
-        cloudwatchRestDAO.handleGetDashboard("some widgets", null);
+        cloudwatchRestDAO.handleGetDashboard("someDashboardName", "some widgets", null);
 
         // then
-        then(cloudwatchRestDAO).should(times(0)).updateChangedDashboard(any());
+        then(cloudwatchRestDAO).should(times(0)).updateChangedDashboard(any(), any());
     }
 
     @Test
@@ -212,10 +485,10 @@ class CloudwatchRestDAOTest {
         willReturn(null).given(cloudwatchRestDAO).annotateWidgets("some widgets");
 
         // when
-        cloudwatchRestDAO.handleGetDashboard("some widgets", null);
+        cloudwatchRestDAO.handleGetDashboard("someDashboardName", "some widgets", null);
 
         // then
-        then(cloudwatchRestDAO).should(times(0)).updateChangedDashboard(any());
+        then(cloudwatchRestDAO).should(times(0)).updateChangedDashboard(any(), any());
     }
 
     @Test
@@ -224,15 +497,18 @@ class CloudwatchRestDAOTest {
         // given
         final var cloudwatchRestDAO = spy(new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
                                                                 mock(ObjectMapper.class)));
-        willReturn("some other widget").given(cloudwatchRestDAO).annotateWidgets("some widgets");
-        willDoNothing().given(cloudwatchRestDAO).updateChangedDashboard("some other widget");
+        willReturn(new DashboardAnnotator.Annotated("some other widget", true)).given(cloudwatchRestDAO)
+                                                                                .annotateWidgets("some widgets");
+        willReturn(CompletableFuture.completedFuture(null)).given(cloudwatchRestDAO)
+                                                           .updateChangedDashboard("someDashboardName",
+                                                                                   "some other widget");
 
         // when
-        cloudwatchRestDAO.handleGetDashboard("some widgets", null);
+        cloudwatchRestDAO.handleGetDashboard("someDashboardName", "some widgets", null);
 
         // then
         final var captor = ArgumentCaptor.forClass(String.class);
-        then(cloudwatchRestDAO).should().updateChangedDashboard(captor.capture());
+        then(cloudwatchRestDAO).should().updateChangedDashboard(eq("someDashboardName"), captor.capture());
         assertThat(captor.getValue()).as("Dashboard was not updated.").isEqualTo("some other widget");
     }
 
@@ -291,19 +567,18 @@ class CloudwatchRestDAOTest {
                 dashboardResponse));
 
         final var cloudwatchRestDAO = spy(new CloudwatchRestDAO(cloudWatchClient, mock(ObjectMapper.class)));
-        cloudwatchRestDAO.setDashboardName("someDashboardName");
         willDoNothing().given(cloudwatchRestDAO)
-                       .handlePutDashboard(dashboardResponse.dashboardValidationMessages(), null);
+                       .handlePutDashboard("someDashboardName", dashboardResponse.dashboardValidationMessages(), null);
 
         // when
-        cloudwatchRestDAO.updateChangedDashboard("some widget");
+        cloudwatchRestDAO.updateChangedDashboard("someDashboardName", "some widget");
 
         // then
         final var captor = ArgumentCaptor.forClass(PutDashboardRequest.class);
         then(cloudWatchClient).should().putDashboard(captor.capture());
         assertThat(captor.getValue().dashboardName()).as("Dashboard name is wrong.").isEqualTo("someDashboardName");
 
-        then(cloudwatchRestDAO).should().handlePutDashboard(any(), any());
+        then(cloudwatchRestDAO).should().handlePutDashboard(any(), any(), any());
 
     }
 
@@ -317,129 +592,441 @@ class CloudwatchRestDAOTest {
         willThrow(new RuntimeException()).given(cloudwatchRestDAO).checkAndThrowError(testException);
 
         // when
-        final ThrowableAssert.ThrowingCallable callable = () -> cloudwatchRestDAO.handlePutDashboard(List.of(), testException);
+        final ThrowableAssert.ThrowingCallable callable = () -> cloudwatchRestDAO.handlePutDashboard("someDashboardName", List.of(), testException);
 
         assertThatExceptionOfType(RuntimeException.class)
                 .isThrownBy(callable);
     }
 
     @Test
-    void shouldAddNewAnnotation() {
+    void shouldReturnOriginalJsonWhenJsonHasNoWidgets() {
 
         // given
-        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
-                                                            mock(ObjectMapper.class));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        final var json = "{\"test\":[\"test\"]}";
+
+        // when
+        final var annotated = cloudwatchRestDAO.annotateWidgets(json);
+
+        // then
+        assertThat(annotated.modified()).as("Json without widgets was modified.").isFalse();
+        assertThat(annotated.body()).as("Returned json is not the original json.").isEqualTo(json);
+    }
+
+    @Test
+    void shouldReturnNullWhenJsonIsInvalid() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
         cloudwatchRestDAO.setMetricPrefix("somePrefix");
 
-        final var widget = widgetBuilder().properties(propertyBuilder().build()).build();
+        // when
+        final var actualJson = cloudwatchRestDAO.annotateWidgets("{\"widgets\":[{\"properties\":");
+
+        // then
+        assertThat(actualJson).as("Invalid json was annotated.").isNull();
+    }
+
+    @Test
+    void shouldAnnotateWidgetWithPrefixedMetricName() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
 
         // when
-        cloudwatchRestDAO.addAnnotationToWidget(widget);
+        final var actualJson = cloudwatchRestDAO.annotateWidgets(json).body();
 
         // then
-        final var verticalAnnotations = widget.getProperties().getAnnotations().getVertical();
-        assertThat(verticalAnnotations)
-                .as("Vertival annotations label is incorrect.")
-                .extracting(AnnotationDTO::getLabel)
-                .containsExactly("somePrefix Start");
+        assertThat(actualJson).as("Start annotation was not added.")
+                              .startsWith(json.substring(0, json.length() - 4)
+                                          + ",\"annotations\":{\"vertical\":[{\"label\":\"somePrefix Start\"");
     }
 
     @Test
-    void shouldAddAnotherAnnotation() {
+    void shouldAnnotateDeployOnlyOnce() {
 
         // given
-        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
-                                                            mock(ObjectMapper.class));
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
+        final var cloudWatchClient = dashboardClient(json, json);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
         cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setDeployId("v1");
+        cloudwatchRestDAO.annotateServerStart();
+        final var captor = ArgumentCaptor.forClass(PutDashboardRequest.class);
+        then(cloudWatchClient).should().putDashboard(captor.capture());
+        final var annotatedJson = captor.getValue().dashboardBody();
 
-        final var annotation = annotionBuilder().label("some Label").value(ZonedDateTime.now()).build();
+        final var otherCloudWatchClient = dashboardClient(annotatedJson);
+        final var otherCloudwatchRestDAO = new CloudwatchRestDAO(otherCloudWatchClient, new ObjectMapper());
+        otherCloudwatchRestDAO.setMetricPrefix("somePrefix");
+        otherCloudwatchRestDAO.setDashboardName("someDashboardName");
+        otherCloudwatchRestDAO.setDeployId("v1");
 
-        final var widget =
-         widgetBuilder().properties(propertyBuilder().annotations(annotationsBuilder().vertical(new ArrayList<>(
-                List.of(annotation))).build()).build()).build();
+        // when
+        otherCloudwatchRestDAO.annotateServerStart();
+
+        // then
+        assertThat(annotatedJson).as("Annotation does not contain the deploy.").contains("somePrefix Start v1");
+        then(otherCloudWatchClient).should().getDashboard(anyGetDashboardRequest());
+        then(otherCloudWatchClient).shouldHaveNoMoreInteractions();
+    }
+
+    @Test
+    void shouldAnnotateAgainWhenDashboardChangedBeforeUpdate() {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
+        final var changedJson = json.replace("]]}}]}", "]],\"title\":\"changed\"}}]}");
+        final var cloudWatchClient = dashboardClient(json, changedJson, changedJson);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setDeployId("v1");
 
         // when
-        cloudwatchRestDAO.addAnnotationToWidget(widget);
+        cloudwatchRestDAO.annotateServerStart();
 
         // then
-        final var verticalAnnotations = widget.getProperties().getAnnotations().getVertical();
-        assertThat(verticalAnnotations).as("Size of vertical annotations is incorrect.").hasSize(2);
-        assertThat(verticalAnnotations.get(1).getLabel()).as("Label of vertical annotations is incorrect.")
-                                                         .isEqualTo("somePrefix Start");
+        final var captor = ArgumentCaptor.forClass(PutDashboardRequest.class);
+        then(cloudWatchClient).should(times(3)).getDashboard(anyGetDashboardRequest());
+        then(cloudWatchClient).should().putDashboard(captor.capture());
+        assertThat(captor.getValue().dashboardBody()).as("Change of the other instance was overwritten.")
+                                                     .contains("\"title\":\"changed\"")
+                                                     .contains("somePrefix Start v1");
     }
 
     @Test
-    void shouldFilterWidgetWithNoMetrics() {
+    void shouldNotUpdateDashboardWhenItKeepsChanging() {
 
         // given
-        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
-                                                            mock(ObjectMapper.class));
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
+        final var cloudWatchClient = dashboardClient(json, json.replace("]]}}]}", "]],\"title\":\"changed\"}}]}"));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
         cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setDeployId("v1");
+        cloudwatchRestDAO.setAnnotationMaxRetries(0);
+
+        // when
+        cloudwatchRestDAO.annotateServerStart();
+
+        // then
+        then(cloudWatchClient).should(times(2)).getDashboard(anyGetDashboardRequest());
+        then(cloudWatchClient).shouldHaveNoMoreInteractions();
+    }
+
+    @Test
+    void shouldDelayAnnotationWithinDebounceWindow() {
 
-        final var widget = widgetBuilder().properties(propertyBuilder().metrics(List.of(metricBuilder().build()))
-                                                                       .build()).build();
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[]}";
+        final var cloudWatchClient = dashboardClient(json);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setDeployId("v1");
+        cloudwatchRestDAO.setAnnotationDebounce(Duration.ofMillis(200));
 
         // when
-        final var test = cloudwatchRestDAO.filterWidgets().test(widget);
+        cloudwatchRestDAO.annotateServerStart();
 
         // then
-        assertThat(test).as("Widget with no metrics was not filtered.").isEqualTo(false);
+        then(cloudWatchClient).should(timeout(1000)).getDashboard(anyGetDashboardRequest());
     }
 
     @Test
-    void shouldFilterWidgetWithOtherMetrics() {
+    void shouldSkipDebouncedAnnotationOnStop() {
 
         // given
-        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
-                                                            mock(ObjectMapper.class));
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
         cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setDeployId("v1");
+        cloudwatchRestDAO.setAnnotationDebounce(Duration.ofMinutes(10));
+        cloudwatchRestDAO.annotateServerStart();
+        cloudwatchRestDAO.start();
 
-        final var values = List.of("some Namespace", "some MetricName");
-        final var widget = widgetBuilder().properties(propertyBuilder().metrics(List.of(metricBuilder().values(values)
-                                                                                                       .build()))
-                                                                       .build()).build();
+        // when
+        cloudwatchRestDAO.stop();
+
+        // then
+        assertThat(cloudwatchRestDAO.isRunning()).as("DAO is still running after stop.").isFalse();
+        then(cloudWatchClient).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void shouldWaitForRunningAnnotationOnStop() {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var response = new CompletableFuture<GetDashboardResponse>();
+        given(cloudWatchClient.getDashboard(anyGetDashboardRequest())).willReturn(response);
+        given(cloudWatchClient.putDashboard(anyPutDashboardRequest()))
+                .willReturn(CompletableFuture.completedFuture(PutDashboardResponse.builder().build()));
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setNamespace("someNamespace");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.annotateServerStart();
+        cloudwatchRestDAO.start();
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)
+                         .execute(() -> response.complete(GetDashboardResponse.builder().dashboardBody(json).build()));
 
         // when
-        final var test = cloudwatchRestDAO.filterWidgets().test(widget);
+        cloudwatchRestDAO.stop();
 
         // then
-        assertThat(test).as("Widget with no metrics was not filtered.").isEqualTo(false);
+        then(cloudWatchClient).should().putDashboard(anyPutDashboardRequest());
     }
 
     @Test
-    void shouldFilterWidgetWithPrefixedMetricName() {
+    void shouldAnnotateEveryNamedDashboard() {
 
         // given
-        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class),
-                                                            mock(ObjectMapper.class));
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
+        final var cloudWatchClient = dashboardClient(json);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
         cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardNames(List.of("someDashboardName", "otherDashboardName"));
 
-        final var values = List.of("some Namespace", "somePrefixMetricName");
-        final var widget = widgetBuilder().properties(propertyBuilder().metrics(List.of(metricBuilder().values(values)
-                                                                                                       .build()))
-                                                                       .build()).build();
+        // when
+        cloudwatchRestDAO.annotateServerStart();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutDashboardRequest.class);
+        then(cloudWatchClient).should(times(2)).putDashboard(captor.capture());
+        assertThat(captor.getAllValues()).as("Not every dashboard was annotated.")
+                                         .extracting(PutDashboardRequest::dashboardName)
+                                         .containsExactlyInAnyOrder("someDashboardName", "otherDashboardName");
+    }
+
+    @Test
+    void shouldAnnotateDashboardsMatchingPattern() {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[]}";
+        final var cloudWatchClient = dashboardClient(json);
+        given(cloudWatchClient.listDashboards(any(ListDashboardsRequest.class))).willAnswer(invocation -> {
+            final ListDashboardsRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(request.nextToken() == null
+                                                     ? dashboardsPage("someToken", "orders-prod", "orders")
+                                                     : dashboardsPage(null, "orders-dev"));
+        });
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setDashboardPattern("orders-*");
 
         // when
-        final var test = cloudwatchRestDAO.filterWidgets().test(widget);
+        cloudwatchRestDAO.annotateServerStart();
 
         // then
-        assertThat(test).as("Widget with prefixed metric name was not filtered.").isEqualTo(true);
+        final var listCaptor = ArgumentCaptor.forClass(ListDashboardsRequest.class);
+        then(cloudWatchClient).should(times(2)).listDashboards(listCaptor.capture());
+        assertThat(listCaptor.getAllValues()).as("Dashboards were not listed by prefix page by page.")
+                                             .extracting(ListDashboardsRequest::dashboardNamePrefix,
+                                                         ListDashboardsRequest::nextToken)
+                                             .containsExactly(tuple("orders-", null), tuple("orders-", "someToken"));
+        final var getCaptor = ArgumentCaptor.forClass(GetDashboardRequest.class);
+        then(cloudWatchClient).should(times(3)).getDashboard(getCaptor.capture());
+        assertThat(getCaptor.getAllValues()).as("Dashboards matching the pattern were not annotated.")
+                                            .extracting(GetDashboardRequest::dashboardName)
+                                            .containsExactlyInAnyOrder("someDashboardName",
+                                                                       "orders-prod",
+                                                                       "orders-dev");
     }
 
     @Test
-    void shouldReturnOriginalJsonWhenJsonIsInvalid() throws IOException {
+    void shouldAnnotateAtMostParallelismDashboardsAtOnce() {
 
         // given
-        final var objectMapper = mock(ObjectMapper.class);
-        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), objectMapper);
-        final var json = "{\"test\":[\"test\"]}";
-        willReturn(null).given(objectMapper).readValue(json, WidgetsDTO.class);
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var responses = new ArrayDeque<CompletableFuture<GetDashboardResponse>>();
+        given(cloudWatchClient.getDashboard(any(GetDashboardRequest.class))).willAnswer(invocation -> {
+            final var response = new CompletableFuture<GetDashboardResponse>();
+            responses.add(response);
+            return response;
+        });
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardNames(List.of("first", "second", "third", "fourth"));
+        cloudwatchRestDAO.setDashboardParallelism(2);
+        cloudwatchRestDAO.annotateServerStart();
+        then(cloudWatchClient).should(times(2)).getDashboard(anyGetDashboardRequest());
+
+        // when
+        responses.poll().complete(GetDashboardResponse.builder().dashboardBody("{\"widgets\":[]}").build());
+
+        // then
+        then(cloudWatchClient).should(times(3)).getDashboard(anyGetDashboardRequest());
+    }
+
+    @Test
+    void shouldAnnotateWidgetsWithConfiguredMetrics() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardMetricPrefixes(List.of("Latency"));
+        cloudwatchRestDAO.setDashboardDimensions(List.of("Service=orders"));
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"],"
+                         + "[\"Namespace\",\"LatencyP99\",\"Service\",\"billing\"]]}},{\"properties\":{\"metrics\":"
+                         + "[[\"Namespace\",\"LatencyP99\",\"Service\",\"orders\"]]}}]}";
 
         // when
-        final var actualJson = cloudwatchRestDAO.annotateWidgets(json);
+        final var actualJson = cloudwatchRestDAO.annotateWidgets(json).body();
 
         // then
-        assertThat(actualJson).as("Returned json is not the original (invalid) json.").isEqualTo(json);
+        assertThat(actualJson).as("Only the widget with the configured metric should be annotated.")
+                              .startsWith(json.substring(0, json.lastIndexOf("]]}}]}") + 2) + ",\"annotations\"");
+    }
+
+    @Test
+    void shouldRejectNegativeAnnotationDebounce() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+
+        // when
+        final ThrowingCallable callable = () -> cloudwatchRestDAO.setAnnotationDebounce(Duration.ofSeconds(-1));
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldRejectSubMillisecondSpoolReplayInterval() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+
+        // when
+        final ThrowingCallable callable = () -> cloudwatchRestDAO.setSpoolReplayInterval(Duration.ofNanos(10));
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldAnnotateEveryStartWithBlankDeployId() {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}";
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDeployId(" ");
+
+        // when
+        final var actualJson = cloudwatchRestDAO.annotateWidgets(json).body();
+
+        // then
+        assertThat(actualJson).as("Blank deploy id was used in the label.")
+                              .contains("\"label\":\"somePrefix Start\",");
+    }
+
+    @Test
+    void shouldRejectNonPositiveAnnotationMaxCount() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+
+        // when
+        final ThrowingCallable callable = () -> cloudwatchRestDAO.setAnnotationMaxCount(0);
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldRejectNonPositiveDashboardParallelism() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+
+        // when
+        final ThrowingCallable callable = () -> cloudwatchRestDAO.setDashboardParallelism(0);
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldRejectDimensionWithoutValue() {
+
+        // given
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(mock(CloudWatchAsyncClient.class), new ObjectMapper());
+
+        // when
+        final ThrowingCallable callable = () -> cloudwatchRestDAO.setDashboardDimensions(List.of("Service"));
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    private static ListDashboardsResponse dashboardsPage(final String nextToken, final String... dashboardNames) {
+        return ListDashboardsResponse.builder()
+                                     .dashboardEntries(Arrays.stream(dashboardNames)
+                                                             .map(name -> DashboardEntry.builder()
+                                                                                        .dashboardName(name)
+                                                                                        .build())
+                                                             .toList())
+                                     .nextToken(nextToken)
+                                     .build();
+    }
+
+    @Test
+    void shouldUpdateDashboardWhenAnnotatedBodyKeepsItsLength() {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]],"
+                         + "\"annotations\":{\"vertical\":[{\"label\":\"somePrefix Start\",\"value\":"
+                         + "\"2018-09-24T00:03:25Z\"}]}}}]}";
+        final var cloudWatchClient = dashboardClient(json);
+        final var cloudwatchRestDAO = new CloudwatchRestDAO(cloudWatchClient, new ObjectMapper());
+        cloudwatchRestDAO.setMetricPrefix("somePrefix");
+        cloudwatchRestDAO.setDashboardName("someDashboardName");
+        cloudwatchRestDAO.setAnnotationMaxCount(1);
+
+        // when
+        cloudwatchRestDAO.annotateServerStart();
+
+        // then
+        final var captor = ArgumentCaptor.forClass(PutDashboardRequest.class);
+        then(cloudWatchClient).should().putDashboard(captor.capture());
+        assertThat(captor.getValue().dashboardBody()).as("Replaced start annotation was not written.")
+                                                     .hasSameSizeAs(json)
+                                                     .doesNotContain("2018-09-24T00:03:25Z");
+    }
+
+    // every further GetDashboard returns the last body
+    private static CloudWatchAsyncClient dashboardClient(final String... bodies) {
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var remainingBodies = new ArrayDeque<>(List.of(bodies));
+        given(cloudWatchClient.getDashboard(any(GetDashboardRequest.class))).willAnswer(invocation -> {
+            final var body = remainingBodies.size() > 1 ? remainingBodies.poll() : remainingBodies.peek();
+            return CompletableFuture.completedFuture(GetDashboardResponse.builder().dashboardBody(body).build());
+        });
+        given(cloudWatchClient.putDashboard(any(PutDashboardRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(PutDashboardResponse.builder().build()));
+        return cloudWatchClient;
     }
 
     private PutDashboardRequest anyPutDashboardRequest() {
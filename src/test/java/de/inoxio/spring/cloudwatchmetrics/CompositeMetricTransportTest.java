@@ -0,0 +1,69 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+class CompositeMetricTransportTest {
+
+    @Test
+    void shouldSendToEveryTransport() {
+
+        // given
+        final var first = new InMemoryMetricTransport();
+        final var second = new InMemoryMetricTransport();
+        final var compositeTransport = new CompositeMetricTransport(List.of(first, second));
+        final var metricDatum = MetricDatum.builder().metricName("someMetric").value(1.0).build();
+
+        // when
+        final var sent = compositeTransport.send("someNamespace", List.of(metricDatum));
+
+        // then
+        assertThat(sent).as("Send did not complete.").isCompleted();
+        assertThat(first.getMetricDatums()).as("First transport was skipped.").containsExactly(metricDatum);
+        assertThat(second.getMetricDatums()).as("Second transport was skipped.").containsExactly(metricDatum);
+    }
+
+    @Test
+    void shouldCompleteWhenEveryTransportCompleted() {
+
+        // given
+        final var pending = new CompletableFuture<Void>();
+        final var slowTransport = mock(MetricTransport.class);
+        given(slowTransport.send(any(), any())).willReturn(pending);
+        final var compositeTransport = new CompositeMetricTransport(List.of(new InMemoryMetricTransport(),
+                                                                            slowTransport));
+
+        // when
+        final var sent = compositeTransport.send("someNamespace", List.of());
+
+        // then
+        assertThat(sent).as("Send completed before slow transport.").isNotDone();
+        pending.complete(null);
+        assertThat(sent).as("Send did not complete with slow transport.").isCompleted();
+    }
+
+    @Test
+    void shouldSumDroppedDatumsAndCloseEveryTransport() {
+
+        // given
+        final var failing = mock(MetricTransport.class);
+        given(failing.getDroppedDatums()).willReturn(3L);
+        given(failing.close(any())).willReturn(false);
+        final var compositeTransport = new CompositeMetricTransport(List.of(failing, new InMemoryMetricTransport()));
+
+        // when
+        final var closed = compositeTransport.close(Duration.ofSeconds(1));
+
+        // then
+        assertThat(compositeTransport.getDroppedDatums()).as("Dropped datums were not summed.").isEqualTo(3);
+        assertThat(closed).as("Failed close was not reported.").isFalse();
+    }
+}
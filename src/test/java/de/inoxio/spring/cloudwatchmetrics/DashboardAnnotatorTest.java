@@ -0,0 +1,271 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.Test;
+
+class DashboardAnnotatorTest {
+
+    private static final Instant TIMESTAMP = Instant.parse("2018-09-24T00:03:25.123Z");
+    //language=JSON
+    private static final String ANNOTATION = "{\"label\":\"somePrefix Start\",\"value\":\"2018-09-24T00:03:25Z\"}";
+
+    private final DashboardAnnotator dashboardAnnotator = new DashboardAnnotator(new JsonFactory(), "somePrefix");
+
+    @Test
+    void shouldAddAnnotationsToWidgetWithPrefixedMetric() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"type\":\"metric\",\"properties\":{\"metrics\":[[\"Namespace\","
+                         + "\"somePrefixMetric\"]],\"view\":\"timeSeries\"},\"x\":12}]}";
+
+        // when
+        final var annotated = dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(annotated).as("Annotation was not added.")
+                             .isEqualTo("{\"widgets\":[{\"type\":\"metric\",\"properties\":{\"metrics\":[["
+                                        + "\"Namespace\",\"somePrefixMetric\"]],\"view\":\"timeSeries\","
+                                        + "\"annotations\":{\"vertical\":[" + ANNOTATION + "]}},\"x\":12}]}");
+    }
+
+    @Test
+    void shouldAppendToVerticalAnnotationsBeforeMetrics() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"annotations\":{\"horizontal\":[{\"value\":1}],"
+                         + "\"vertical\":[{\"label\":\"some label\",\"value\":\"2018-09-23T00:00:00Z\"}]},"
+                         + "\"metrics\":[[\"Namespace\",\"somePrefixMetric\",{\"label\":\"some label\"}]]}}]}";
+
+        // when
+        final var annotated = dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(annotated).as("Annotation was not appended.")
+                             .isEqualTo("{\"widgets\":[{\"properties\":{\"annotations\":{\"horizontal\":["
+                                        + "{\"value\":1}],\"vertical\":[{\"label\":\"some label\",\"value\":"
+                                        + "\"2018-09-23T00:00:00Z\"}," + ANNOTATION + "]},\"metrics\":[["
+                                        + "\"Namespace\",\"somePrefixMetric\",{\"label\":\"some label\"}]]}}]}");
+    }
+
+    @Test
+    void shouldReplaceNullAnnotations() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"annotations\":null,\"metrics\":[[\"Namespace\","
+                         + "\"somePrefixMetric\"]]}}]}";
+
+        // when
+        final var annotated = dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(annotated).as("Null annotations were not replaced.")
+                             .isEqualTo("{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\","
+                                        + "\"somePrefixMetric\"]],\"annotations\":{\"vertical\":[" + ANNOTATION
+                                        + "]}}}]}");
+    }
+
+    @Test
+    void shouldOnlyAnnotateMatchingWidgets() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"type\":\"text\",\"properties\":{\"markdown\":\"somePrefix\"}},"
+                         + "{\"properties\":{\"metrics\":[[{\"expression\":\"m1*2\"}],[\"Namespace\","
+                         + "\"otherMetric\"]]}},{\"properties\":{\"metrics\":[[\"Namespace\","
+                         + "\"somePrefixMetric\"]]}}],\"start\":\"-PT6H\"}";
+
+        // when
+        final var matchingWidgets = dashboardAnnotator.matchingWidgets(json);
+        final var annotated = dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(matchingWidgets.stream()).as("Matching widgets are incorrect.").containsExactly(2);
+        assertThat(annotated).as("Not matching widgets were changed.")
+                             .startsWith(json.substring(0, json.lastIndexOf("{\"properties\"")))
+                             .endsWith("\"annotations\":{\"vertical\":[" + ANNOTATION
+                                       + "]}}}],\"start\":\"-PT6H\"}");
+    }
+
+    @Test
+    void shouldAnnotateOnlyWidgetsWithoutTheLabel() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]],"
+                         + "\"annotations\":{\"vertical\":[{\"label\":\"somePrefix Start v1\",\"value\":"
+                         + "\"2018-09-23T00:00:00Z\"}]}}},{\"properties\":{\"metrics\":[[\"Namespace\","
+                         + "\"somePrefixMetric\"]]}}]}";
+
+        // when
+        final var annotatedOnce = dashboardAnnotator.annotateOnce(json, "somePrefix Start v1", TIMESTAMP).body();
+        final var annotatedTwice = dashboardAnnotator.annotateOnce(annotatedOnce, "somePrefix Start v1", TIMESTAMP);
+
+        // then
+        assertThat(dashboardAnnotator.matchingWidgets(json, "somePrefix Start v1").stream())
+                .as("Widget already annotated was matched.")
+                .containsExactly(1);
+        assertThat(annotatedOnce).as("Annotation was not added to the other widget.")
+                                 .endsWith("\"annotations\":{\"vertical\":[{\"label\":\"somePrefix Start v1\","
+                                           + "\"value\":\"2018-09-24T00:03:25Z\"}]}}}]}");
+        assertThat(annotatedTwice.modified()).as("Deploy was annotated twice.").isFalse();
+        assertThat(annotatedTwice.body()).as("Body of the unmodified dashboard changed.").isEqualTo(annotatedOnce);
+    }
+
+    @Test
+    void shouldMergeCloseStartAnnotationsIntoBand() throws IOException {
+
+        // given
+        final var retention = new DashboardAnnotator.Retention(Integer.MAX_VALUE, null, Duration.ofMinutes(5));
+        final var retainingAnnotator = new DashboardAnnotator(new JsonFactory(), "somePrefix", retention);
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]],"
+                         + "\"annotations\":{\"vertical\":[{\"label\":\"somePrefix Start\",\"value\":"
+                         + "\"2018-09-24T00:01:00Z\"},{\"label\":\"some label\",\"value\":"
+                         + "\"2018-09-24T00:02:00Z\"}]}}}]}";
+
+        // when
+        final var annotated = retainingAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(annotated).as("Start annotations were not merged into a band.")
+                             .endsWith("\"vertical\":[{\"label\":\"some label\",\"value\":\"2018-09-24T00:02:00Z\"},"
+                                       + "[{\"label\":\"somePrefix Start\",\"value\":\"2018-09-24T00:01:00Z\"},"
+                                       + "{\"value\":\"2018-09-24T00:03:25Z\"}]]}}}]}");
+    }
+
+    @Test
+    void shouldOnlyKeepRecentStartAnnotations() throws IOException {
+
+        // given
+        final var retention = new DashboardAnnotator.Retention(2, Duration.ofDays(7), null);
+        final var retainingAnnotator = new DashboardAnnotator(new JsonFactory(), "somePrefix", retention);
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]],"
+                         + "\"annotations\":{\"vertical\":[{\"label\":\"somePrefix Start\",\"value\":"
+                         + "\"2018-09-14T00:00:00Z\"},[{\"label\":\"somePrefix Start\",\"value\":"
+                         + "\"2018-09-20T00:00:00Z\"},{\"value\":\"2018-09-20T01:00:00Z\"}],{\"label\":"
+                         + "\"somePrefix Start\",\"value\":\"2018-09-22T00:00:00.000Z\"}]}}}]}";
+
+        // when
+        final var annotated = retainingAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(annotated).as("Old start annotations were not removed.")
+                             .endsWith("\"vertical\":[{\"label\":\"somePrefix Start\",\"value\":"
+                                       + "\"2018-09-22T00:00:00Z\"}," + ANNOTATION + "]}}}]}");
+    }
+
+    @Test
+    void shouldKeepStartAnnotationsEditedByHand() throws IOException {
+
+        // given
+        final var retention = new DashboardAnnotator.Retention(1, null, null);
+        final var retainingAnnotator = new DashboardAnnotator(new JsonFactory(), "somePrefix", retention);
+        //language=JSON
+        final var edited = "{\"label\":\"somePrefix Start\",\"value\":\"2018-09-14T00:00:00Z\",\"color\":\"#ff0000\"}";
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]],"
+                         + "\"annotations\":{\"vertical\":[" + edited + "]}}}]}";
+
+        // when
+        final var annotated = retainingAnnotator.annotate(json, "somePrefix Start", TIMESTAMP).body();
+
+        // then
+        assertThat(annotated).as("Edited start annotation was removed.")
+                             .endsWith("\"vertical\":[" + edited + "," + ANNOTATION + "]}}}]}");
+    }
+
+    @Test
+    void shouldFindLabelOfBand() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]],"
+                         + "\"annotations\":{\"vertical\":[[{\"label\":\"somePrefix Start v1\",\"value\":"
+                         + "\"2018-09-24T00:01:00Z\"},{\"value\":\"2018-09-24T00:02:00Z\"}]]}}}]}";
+
+        // when
+        final var annotated = dashboardAnnotator.annotateOnce(json, "somePrefix Start v1", TIMESTAMP);
+
+        // then
+        assertThat(annotated.modified()).as("Deploy in a band was annotated again.").isFalse();
+        assertThat(annotated.body()).as("Body of the unmodified dashboard changed.").isEqualTo(json);
+    }
+
+    @Test
+    void shouldMatchMetricNameOnly() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"somePrefixNamespace\",\"Metric\","
+                         + "\"somePrefixDimension\",\"somePrefixValue\"]]}}]}";
+
+        // when
+        final var annotated = dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP);
+
+        // then
+        assertThat(annotated.modified()).as("Widget without prefixed metric name was annotated.").isFalse();
+    }
+
+    @Test
+    void shouldResolveValuesOfPreviousMetric() throws IOException {
+
+        // given
+        final var matcher = new DashboardMetricMatcher(List.of("Latency"), Set.of(), Map.of("Service", "orders"));
+        final var matchingAnnotator = new DashboardAnnotator(new JsonFactory(),
+                                                             "somePrefix",
+                                                             matcher,
+                                                             DashboardAnnotator.Retention.UNLIMITED);
+        //language=JSON
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"Errors\",\"Service\","
+                         + "\"orders\"],[\".\",\"LatencyP99\",\".\",\".\"]]}}]}";
+
+        // when
+        final var matchingWidgets = matchingAnnotator.matchingWidgets(json);
+
+        // then
+        assertThat(matchingWidgets.stream()).as("Metric continuing the previous one did not match.")
+                                            .containsExactly(0);
+    }
+
+    @Test
+    void shouldReturnBodyWithoutWidgetsUnchanged() throws IOException {
+
+        // given
+        //language=JSON
+        final var json = "[{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}}]}]";
+
+        // when
+        final var annotated = dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP);
+
+        // then
+        assertThat(annotated.modified()).as("Body without widgets object was changed.").isFalse();
+        assertThat(annotated.body()).as("Body without widgets object was changed.").isEqualTo(json);
+    }
+
+    @Test
+    void shouldFailOnInvalidJson() {
+
+        // given
+        final var json = "{\"widgets\":[{\"properties\":{\"metrics\":[[\"Namespace\",\"somePrefixMetric\"]]}";
+
+        // when
+        final ThrowingCallable callable = () -> dashboardAnnotator.annotate(json, "somePrefix Start", TIMESTAMP);
+
+        // then
+        assertThatExceptionOfType(JsonProcessingException.class).isThrownBy(callable);
+    }
+}
@@ -0,0 +1,92 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.Test;
+
+class DashboardMetricMatcherTest {
+
+    @Test
+    void shouldMatchAnyOfTheMetricNamePrefixes() {
+
+        // given
+        final var matcher = new DashboardMetricMatcher(List.of("Latency", "Error", "ErrorRate"), Set.of(), Map.of());
+
+        // when
+        final var latencyMatches = matcher.matches(List.of("Namespace", "LatencyP99"));
+        final var errorMatches = matcher.matches(List.of("Namespace", "ErrorRate"));
+        final var otherMatches = matcher.matches(List.of("Namespace", "Throughput"));
+
+        // then
+        assertThat(latencyMatches).as("Metric with first prefix did not match.").isTrue();
+        assertThat(errorMatches).as("Metric with redundant prefix did not match.").isTrue();
+        assertThat(otherMatches).as("Metric without prefix matched.").isFalse();
+    }
+
+    @Test
+    void shouldMatchOnlyGivenNamespaces() {
+
+        // given
+        final var matcher = new DashboardMetricMatcher(List.of("Latency"), Set.of("Orders"), Map.of());
+
+        // when
+        final var ordersMatches = matcher.matches(List.of("Orders", "Latency"));
+        final var billingMatches = matcher.matches(List.of("Billing", "Latency"));
+
+        // then
+        assertThat(ordersMatches).as("Metric of given namespace did not match.").isTrue();
+        assertThat(billingMatches).as("Metric of other namespace matched.").isFalse();
+    }
+
+    @Test
+    void shouldMatchOnlyMetricsWithAllDimensions() {
+
+        // given
+        final var matcher = new DashboardMetricMatcher(List.of("Latency"),
+                                                       Set.of(),
+                                                       Map.of("Service", "orders", "Stage", "prod"));
+
+        // when
+        final var allMatches = matcher.matches(List.of("Namespace", "Latency", "Stage", "prod", "Service", "orders"));
+        final var otherValueMatches = matcher.matches(List.of("Namespace",
+                                                              "Latency",
+                                                              "Service",
+                                                              "billing",
+                                                              "Stage",
+                                                              "prod"));
+        final var missingMatches = matcher.matches(List.of("Namespace", "Latency", "Service", "orders"));
+
+        // then
+        assertThat(allMatches).as("Metric with all dimensions did not match.").isTrue();
+        assertThat(otherValueMatches).as("Metric with other dimension value matched.").isFalse();
+        assertThat(missingMatches).as("Metric with missing dimension matched.").isFalse();
+    }
+
+    @Test
+    void shouldNotMatchWithoutMetricName() {
+
+        // given
+        final var matcher = DashboardMetricMatcher.metricNamePrefix("");
+
+        // when
+        final var matches = matcher.matches(List.of("Namespace"));
+
+        // then
+        assertThat(matches).as("Metric without name matched.").isFalse();
+    }
+
+    @Test
+    void shouldRequireMetricNamePrefix() {
+
+        // when
+        final ThrowingCallable callable = () -> new DashboardMetricMatcher(List.of(), Set.of(), Map.of());
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+}
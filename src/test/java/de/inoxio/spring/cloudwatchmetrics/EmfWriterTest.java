@@ -0,0 +1,245 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+class EmfWriterTest {
+
+    private static final Instant TIMESTAMP = Instant.ofEpochMilli(60_000);
+    private static final Dimension STAGE = Dimension.builder().name("Stage").value("prod").build();
+
+    @Test
+    void shouldWriteOneDocumentPerDimensionSet() throws IOException {
+
+        // given
+        final var sink = new ByteArrayOutputStream();
+        final var emfWriter = new EmfWriter(sink);
+
+        // when
+        emfWriter.send("someNamespace", List.of(datum("someMetric", List.of(STAGE)).value(1.0).build(),
+                                                datum("otherMetric", List.of(STAGE)).value(2.0).build(),
+                                                datum("someMetric", List.of()).value(3.0).build()));
+
+        // then
+        final var documents = documents(sink);
+        assertThat(documents).as("Metrics were not grouped by dimension set.").hasSize(2);
+        final var document = documents.get(0);
+        final var directive = document.at("/_aws/CloudWatchMetrics/0");
+        assertThat(document.at("/_aws/Timestamp").asLong()).as("Timestamp is incorrect.").isEqualTo(60_000);
+        assertThat(directive.at("/Namespace").asText()).as("Namespace is incorrect.").isEqualTo("someNamespace");
+        assertThat(directive.at("/Dimensions/0/0").asText()).as("Dimension set is incorrect.").isEqualTo("Stage");
+        assertThat(directive.at("/Metrics/0/Unit").asText()).as("Unit is incorrect.").isEqualTo("Count");
+        assertThat(document.at("/Stage").asText()).as("Dimension value is incorrect.").isEqualTo("prod");
+        assertThat(document.at("/someMetric").asDouble()).as("Value is incorrect.").isEqualTo(1.0);
+        assertThat(document.at("/otherMetric").asDouble()).as("Value is incorrect.").isEqualTo(2.0);
+        assertThat(documents.get(1).at("/_aws/CloudWatchMetrics/0/Dimensions/0").size())
+                .as("Metric without dimensions got some.")
+                .isZero();
+    }
+
+    @Test
+    void shouldRepeatCountedValuesUnderTheirName() throws IOException {
+
+        // given
+        final var sink = new ByteArrayOutputStream();
+        final var emfWriter = new EmfWriter(sink);
+        final var datum = datum("someLatency", List.of()).values(10.0, 20.0).counts(3.0, 2.0).build();
+        final var otherDatum = datum("someLatency", List.of()).values(5.0, 10.0).counts(2.0, 1.0).build();
+
+        // when
+        emfWriter.send("someNamespace", List.of(datum, otherDatum));
+
+        // then
+        final var documents = documents(sink);
+        assertThat(documents).as("Counted values were not written as one document.").hasSize(1);
+        assertThat(documents.get(0).at("/someLatency")).as("Values were not repeated by their counts.")
+                                                       .extracting(JsonNode::asDouble)
+                                                       .containsExactly(10.0, 10.0, 10.0, 10.0, 20.0, 20.0, 5.0, 5.0);
+    }
+
+    @Test
+    void shouldKeepShareOfCountedValuesAboveSampleLimit() throws IOException {
+
+        // given
+        final var sink = new ByteArrayOutputStream();
+        final var emfWriter = new EmfWriter(sink);
+        final var datum = datum("someLatency", List.of()).values(10.0, 20.0, 30.0)
+                                                         .counts(150_000.0, 50_000.0, 1.0)
+                                                         .build();
+
+        // when
+        emfWriter.send("someNamespace", List.of(datum));
+
+        // then
+        // a single value is written as a number instead of an array
+        final var values = documents(sink).stream()
+                                          .map(document -> document.at("/someLatency"))
+                                          .flatMap(node -> node.isArray() ? node.valueStream() : Stream.of(node))
+                                          .map(JsonNode::asDouble)
+                                          .toList();
+        assertThat(values).as("Samples were not capped.").hasSize(EmfWriter.MAX_SAMPLES_PER_METRIC + 1);
+        assertThat(values).as("Value lost its share of the samples.").filteredOn(value -> value == 10.0).hasSize(750);
+        assertThat(values).as("Rare value was dropped.").containsOnlyOnce(30.0);
+    }
+
+    @Test
+    void shouldSplitValuesAtLimit() throws IOException {
+
+        // given
+        final var sink = new ByteArrayOutputStream();
+        final var emfWriter = new EmfWriter(sink);
+        final var values = new ArrayList<Double>();
+        for (var i = 0; i < 150; i++) {
+            values.add((double) i);
+        }
+        final var datum = datum("someLatency", List.of()).values(values).build();
+
+        // when
+        emfWriter.send("someNamespace", List.of(datum));
+
+        // then
+        final var documents = documents(sink);
+        assertThat(documents).as("Values were not split into documents.").hasSize(2);
+        assertThat(documents.get(0).at("/someLatency").size()).as("Document has too many values.")
+                                                             .isEqualTo(EmfWriter.MAX_VALUES_PER_METRIC);
+        assertThat(documents.get(1).at("/someLatency").size()).as("Remaining values are missing.").isEqualTo(50);
+    }
+
+    @Test
+    void shouldFillDocumentsUpToMetricLimit() throws IOException {
+
+        // given
+        final var sink = new ByteArrayOutputStream();
+        final var emfWriter = new EmfWriter(sink);
+        final var metricDatums = new ArrayList<MetricDatum>();
+        for (var i = 0; i < 250; i++) {
+            metricDatums.add(datum("someMetric" + i, List.of()).value(1.0).build());
+        }
+
+        // when
+        emfWriter.send("someNamespace", metricDatums);
+
+        // then
+        assertThat(documents(sink)).as("Documents were not filled up to the limit.")
+                                   .extracting(document -> document.at("/_aws/CloudWatchMetrics/0/Metrics").size())
+                                   .containsExactly(100, 100, 50);
+    }
+
+    @Test
+    void shouldWriteStatisticSetAsSamplesWithSameSum() throws IOException {
+
+        // given
+        final var sink = new ByteArrayOutputStream();
+        final var emfWriter = new EmfWriter(sink);
+        final var statisticSet = StatisticSet.builder().sampleCount(4.0).sum(60.0).minimum(10.0).maximum(20.0).build();
+        final var datum = datum("someTimer", List.of()).unit(StandardUnit.MILLISECONDS)
+                                                       .statisticValues(statisticSet)
+                                                       .storageResolution(1)
+                                                       .build();
+
+        // when
+        emfWriter.send("someNamespace", List.of(datum));
+
+        // then
+        final var document = documents(sink).get(0);
+        assertThat(document.at("/someTimer")).as("Statistic set was not written as samples.")
+                                             .extracting(JsonNode::asDouble)
+                                             .containsExactly(10.0, 20.0, 15.0, 15.0);
+        assertThat(document.at("/_aws/CloudWatchMetrics/0/Metrics/0/StorageResolution").asInt())
+                .as("Storage resolution is missing.")
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldWriteWholeDocumentsInBatches() throws IOException {
+
+        // given
+        final var writes = new ArrayList<String>();
+        final var sink = new OutputStream() {
+
+            @Override
+            public void write(final int b) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) {
+                writes.add(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+        };
+        final var emfWriter = new EmfWriter(sink, false, 1);
+        final var metricDatums = new ArrayList<MetricDatum>();
+        for (var i = 0; i < 3; i++) {
+            metricDatums.add(datum("someMetric", List.of(Dimension.builder().name("Index").value("" + i).build()))
+                                     .value(1.0)
+                                     .build());
+        }
+
+        // when
+        emfWriter.send("someNamespace", metricDatums);
+
+        // then
+        assertThat(writes).as("Documents were not written one batch each.").hasSize(3)
+                          .allSatisfy(write -> assertThat(write).endsWith("}\n"));
+    }
+
+    @Test
+    void shouldCountDatumsDroppedBySink() {
+
+        // given
+        final var sink = new OutputStream() {
+
+            @Override
+            public void write(final int b) throws IOException {
+                throw new IOException("Disk full!");
+            }
+        };
+        final var emfWriter = new EmfWriter(sink);
+
+        // when
+        emfWriter.send("someNamespace", List.of(datum("someMetric", List.of()).value(1.0).build()));
+
+        // then
+        assertThat(emfWriter.getDroppedDatums()).as("Dropped datums were not counted.").isEqualTo(1);
+    }
+
+    private static MetricDatum.Builder datum(final String name, final List<Dimension> dimensions) {
+        return MetricDatum.builder()
+                          .metricName(name)
+                          .dimensions(dimensions)
+                          .unit(StandardUnit.COUNT)
+                          .timestamp(TIMESTAMP);
+    }
+
+    static List<JsonNode> documents(final ByteArrayOutputStream sink) throws IOException {
+        return documents(sink.toString(StandardCharsets.UTF_8));
+    }
+
+    static List<JsonNode> documents(final String lines) throws IOException {
+        if (lines.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final var objectMapper = new ObjectMapper();
+        final var documents = new ArrayList<JsonNode>();
+        for (final var line : lines.split("\n")) {
+            documents.add(objectMapper.readTree(line));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,135 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+class HistogramAggregateTest {
+
+    private static final MetricIdentity IDENTITY = new MetricIdentity("someMetric", List.of());
+
+    @Test
+    void shouldKeepRelativeErrorOfRepresentativeValues() {
+
+        // given
+        final var histogram = new HistogramAggregate(0.01);
+
+        // when
+        for (var value = 0.001; value < 100_000; value *= 1.37) {
+            final var representative = histogram.bucketValue(histogram.bucketIndex(value));
+
+            // then
+            assertThat(representative).as("Representative value exceeds relative error.")
+                                      .isCloseTo(value, within(value * 0.01));
+        }
+    }
+
+    @Test
+    void shouldCollapseEqualSamplesIntoOneValue() {
+
+        // given
+        final var histogram = new HistogramAggregate(0.01);
+        for (var i = 0; i < 10_000; i++) {
+            histogram.record(42.0);
+        }
+
+        // when
+        final var metricDatums = metricDatums(histogram);
+
+        // then
+        assertThat(metricDatums).as("Samples were not collapsed into one datum.").hasSize(1);
+        assertThat(metricDatums.get(0).values()).as("Samples were not collapsed into one value.").hasSize(1);
+        assertThat(metricDatums.get(0).counts()).as("Count of collapsed samples is incorrect.").containsExactly(10_000.0);
+    }
+
+    @Test
+    void shouldCountNegativeAndZeroValues() {
+
+        // given
+        final var histogram = new HistogramAggregate(0.01);
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(5);
+
+        // when
+        final var metricDatums = metricDatums(histogram);
+
+        // then
+        assertThat(metricDatums.get(0).values()).as("Negative or zero values are missing.")
+                                                .satisfiesExactly(value -> assertThat(value).isCloseTo(-5.0,
+                                                                                                       within(0.05)),
+                                                                  value -> assertThat(value).isEqualTo(0.0),
+                                                                  value -> assertThat(value).isCloseTo(5.0,
+                                                                                                       within(0.05)));
+    }
+
+    @Test
+    void shouldIgnoreNonFiniteValues() {
+
+        // given
+        final var histogram = new HistogramAggregate(0.01);
+        histogram.record(5);
+        histogram.record(Double.POSITIVE_INFINITY);
+        histogram.record(Double.NEGATIVE_INFINITY);
+        histogram.record(Double.NaN);
+
+        // when
+        final var metricDatums = metricDatums(histogram);
+
+        // then
+        assertThat(metricDatums).as("Non finite values were recorded.").hasSize(1);
+        assertThat(metricDatums.get(0).values()).as("Recorded value was lost.")
+                                                .singleElement()
+                                                .satisfies(value -> assertThat(value).isCloseTo(5.0, within(0.05)));
+        assertThat(metricDatums.get(0).counts()).as("Non finite values were counted.").containsExactly(1.0);
+    }
+
+    @Test
+    void shouldSplitBucketsIntoSeveralDatums() {
+
+        // given
+        final var histogram = new HistogramAggregate(0.01);
+        for (var value = 1.0; value < 1_000_000; value *= 1.03) {
+            histogram.record(value);
+        }
+
+        // when
+        final var metricDatums = metricDatums(histogram);
+
+        // then
+        assertThat(metricDatums).as("Buckets were not split at the datum limit.").hasSizeGreaterThan(1);
+        assertThat(metricDatums).as("Datum exceeds the values limit.")
+                                .allSatisfy(metricDatum -> assertThat(metricDatum.values()).hasSizeLessThanOrEqualTo(
+                                        ValueCountsAggregate.MAX_VALUES_PER_DATUM));
+    }
+
+    @Test
+    void shouldLimitBucketsForValuesOfManyMagnitudes() {
+
+        // given
+        final var bucketCounts = new HistogramAggregate.BucketCounts();
+
+        // when
+        for (var index = -20_000; index < 20_000; index += 7) {
+            bucketCounts.increment(index);
+        }
+
+        // then
+        assertThat(bucketCounts.size()).as("Bucket array grew beyond its limit.")
+                                       .isLessThanOrEqualTo(HistogramAggregate.BucketCounts.MAX_BUCKETS);
+        final var total = new long[1];
+        bucketCounts.forEachBucket((index, count) -> total[0] += count);
+        assertThat(total[0]).as("Samples were lost when merging buckets.").isEqualTo((40_000 + 6) / 7);
+    }
+
+    private static List<MetricDatum> metricDatums(final HistogramAggregate histogram) {
+        final var metricDatums = new ArrayList<MetricDatum>();
+        histogram.addMetricDatums(IDENTITY, Instant.EPOCH, metricDatums);
+        return metricDatums;
+    }
+}
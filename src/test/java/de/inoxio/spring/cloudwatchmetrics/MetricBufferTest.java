@@ -0,0 +1,232 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+
+class MetricBufferTest {
+
+    private static final MetricIdentity SOME_METRIC = new MetricIdentity("someMetric", List.of());
+
+    @Test
+    void shouldSeparateMetricsByDimensions() {
+
+        // given
+        final var buffer = new MetricBuffer();
+        final var dimension = Dimension.builder().name("someDimension").value("dimensionValue").build();
+
+        // when
+        buffer.record(SOME_METRIC, 1);
+        buffer.record(new MetricIdentity("someMetric", List.of(dimension)), 1);
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Metrics with different dimensions were merged.").hasSize(2);
+    }
+
+    @Test
+    void shouldKeepDistinctValuesUpToDatumLimit() {
+
+        // given
+        final var buffer = new MetricBuffer();
+        for (var i = 0; i < ValueCountsAggregate.MAX_VALUES_PER_DATUM; i++) {
+            buffer.record(SOME_METRIC, i);
+            buffer.record(SOME_METRIC, i);
+        }
+
+        // when
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Distinct values were not sent exactly.")
+                                .singleElement()
+                                .satisfies(metricDatum -> {
+                                    assertThat(metricDatum.values()).hasSize(ValueCountsAggregate.MAX_VALUES_PER_DATUM)
+                                                                    .startsWith(0.0, 1.0, 2.0);
+                                    assertThat(metricDatum.counts()).containsOnly(2.0);
+                                });
+    }
+
+    @Test
+    void shouldCountDistinctValuesAboveDatumLimitInHistogram() {
+
+        // given
+        final var buffer = new MetricBuffer();
+        for (var i = 0; i < 100_000; i++) {
+            buffer.record(SOME_METRIC, i);
+        }
+
+        // when
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Distinct values exceed the datum limit.")
+                                .allSatisfy(metricDatum -> assertThat(metricDatum.values())
+                                        .hasSizeLessThanOrEqualTo(ValueCountsAggregate.MAX_VALUES_PER_DATUM));
+        assertThat(metricDatums).as("Distinct values were not counted in buckets.")
+                                .flatExtracting(MetricDatum::values)
+                                .hasSizeLessThan(1_000);
+        final var sampleCount = metricDatums.stream()
+                                            .flatMap(metricDatum -> metricDatum.counts().stream())
+                                            .mapToDouble(Double::doubleValue)
+                                            .sum();
+        assertThat(sampleCount).as("Samples were lost in the histogram.").isEqualTo(100_000.0);
+    }
+
+    @Test
+    void shouldIgnoreNonFiniteValues() {
+
+        // given
+        final var buffer = new MetricBuffer();
+        buffer.record(SOME_METRIC, Double.POSITIVE_INFINITY);
+        buffer.record(SOME_METRIC, Double.NaN);
+        buffer.record(SOME_METRIC, 1);
+
+        // when
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Non finite values were recorded.")
+                                .flatExtracting(MetricDatum::values)
+                                .containsExactly(1.0);
+    }
+
+    @Test
+    void shouldAggregateValuesIntoStatisticSet() {
+
+        // given
+        final var buffer = new MetricBuffer(MetricAggregation.STATISTIC_SET);
+        buffer.record(SOME_METRIC, 4);
+        buffer.record(SOME_METRIC, 1);
+        buffer.record(SOME_METRIC, 7);
+
+        // when
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Values were not aggregated into one datum.").hasSize(1);
+        final var statisticSet = metricDatums.get(0).statisticValues();
+        assertThat(statisticSet.sampleCount()).as("Sample count is incorrect.").isEqualTo(3.0);
+        assertThat(statisticSet.sum()).as("Sum is incorrect.").isEqualTo(12.0);
+        assertThat(statisticSet.minimum()).as("Minimum is incorrect.").isEqualTo(1.0);
+        assertThat(statisticSet.maximum()).as("Maximum is incorrect.").isEqualTo(7.0);
+        assertThat(metricDatums.get(0).values()).as("Statistic set datum must not contain values.").isEmpty();
+    }
+
+    @Test
+    void shouldBeEmptyAfterDrain() {
+
+        // given
+        final var buffer = new MetricBuffer();
+        buffer.record(SOME_METRIC, 1);
+        buffer.drain();
+
+        // when
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Buffer was not emptied by drain.").isEmpty();
+    }
+
+    @Test
+    void shouldNotLoseValuesRecordedWhileDraining() throws InterruptedException {
+
+        // given
+        final var buffer = new MetricBuffer(MetricAggregation.STATISTIC_SET);
+        final var threads = new Thread[4];
+        for (var t = 0; t < threads.length; t++) {
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (var i = 0; i < 10_000; i++) {
+                    buffer.record(SOME_METRIC, 1);
+                }
+            });
+        }
+
+        // when
+        var total = 0.0;
+        while (Arrays.stream(threads).anyMatch(Thread::isAlive)) {
+            total += sampleCount(buffer);
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        total += sampleCount(buffer);
+
+        // then
+        assertThat(total).as("Concurrently recorded values were lost.").isEqualTo(40_000.0);
+    }
+
+    @Test
+    void shouldStampDatumsWithWindowStart() {
+
+        // given
+        final var clock = mock(Clock.class);
+        given(clock.millis()).willReturn(Instant.parse("2024-01-01T12:00:25Z").toEpochMilli());
+        final var buffer = new MetricBuffer(MetricAggregation.VALUES, Duration.ofMinutes(1), clock);
+        buffer.record(SOME_METRIC, 1);
+
+        // when
+        final var metricDatums = buffer.drain();
+
+        // then
+        assertThat(metricDatums).as("Datum was not stamped with the start of its minute.")
+                                .extracting(MetricDatum::timestamp)
+                                .containsExactly(Instant.parse("2024-01-01T12:00:00Z"));
+    }
+
+    @Test
+    void shouldStartNextWindowOnBoundaryWhenDrainedSlightlyEarly() {
+
+        // given
+        final var clock = mock(Clock.class);
+        given(clock.millis()).willReturn(Instant.parse("2024-01-01T12:00:00Z").toEpochMilli(),
+                                         Instant.parse("2024-01-01T12:00:59.990Z").toEpochMilli());
+        final var buffer = new MetricBuffer(MetricAggregation.VALUES, Duration.ofMinutes(1), clock);
+        buffer.drain();
+
+        // when
+        buffer.record(SOME_METRIC, 1);
+        final var metricDatums = new ArrayList<MetricDatum>();
+        final var timestamp = buffer.drain(metricDatums);
+
+        // then
+        assertThat(timestamp).as("Early drain did not start the next minute.")
+                             .isEqualTo(Instant.parse("2024-01-01T12:01:00Z"));
+        assertThat(metricDatums).as("Datum has not the window timestamp.")
+                                .extracting(MetricDatum::timestamp)
+                                .containsExactly(timestamp);
+    }
+
+    @Test
+    void shouldKeepMinuteForDrainsWithinIt() {
+
+        // given
+        final var clock = mock(Clock.class);
+        given(clock.millis()).willReturn(Instant.parse("2024-01-01T12:00:00Z").toEpochMilli(),
+                                         Instant.parse("2024-01-01T12:00:20Z").toEpochMilli(),
+                                         Instant.parse("2024-01-01T12:00:40Z").toEpochMilli());
+        final var buffer = new MetricBuffer(MetricAggregation.VALUES, Duration.ofMinutes(1), clock);
+        buffer.drain();
+
+        // when
+        final var timestamp = buffer.drain(new ArrayList<>());
+
+        // then
+        assertThat(timestamp).as("Window within a minute was not stamped with it.")
+                             .isEqualTo(Instant.parse("2024-01-01T12:00:00Z"));
+    }
+
+    private static double sampleCount(final MetricBuffer buffer) {
+        return buffer.drain().stream().mapToDouble(metricDatum -> metricDatum.statisticValues().sampleCount()).sum();
+    }
+}
@@ -0,0 +1,121 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static de.inoxio.spring.cloudwatchmetrics.DimensionKeyPair.DimensionKeyPairBuilder.dimensionKeyPairBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+
+class MetricIdentityCacheTest {
+
+    private static final List<Dimension> GLOBAL_DIMENSIONS = List.of(Dimension.builder()
+                                                                              .name("ClusterName")
+                                                                              .value("someCluster")
+                                                                              .build());
+
+    @Test
+    void shouldReuseIdentityOfSameSeries() {
+
+        // given
+        final var cache = new MetricIdentityCache();
+        final var identity = cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of(endpoint("/a")));
+
+        // when
+        final var cachedIdentity = cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of(endpoint("/a")));
+
+        // then
+        assertThat(cachedIdentity).as("Identity of same series was not reused.").isSameAs(identity);
+    }
+
+    @Test
+    void shouldMergeMetricDimensionsIntoGlobalDimensions() {
+
+        // given
+        final var cache = new MetricIdentityCache();
+        final var dimensions = List.of(endpoint("/a"),
+                                       dimensionKeyPairBuilder().name("ClusterName").value("otherCluster").build());
+
+        // when
+        final var identity = cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, dimensions);
+
+        // then
+        assertThat(identity.getMetricName()).as("Metric name is not prefixed.").isEqualTo("somePrefixsomeMetric");
+        assertThat(identity.getDimensions()).as("Dimensions were not merged.")
+                                            .extracting(Dimension::name, Dimension::value)
+                                            .containsExactly(tuple("Endpoint", "/a"),
+                                                             tuple("ClusterName", "otherCluster"));
+    }
+
+    @Test
+    void shouldRebuildIdentityWhenGlobalDimensionsChanged() {
+
+        // given
+        final var cache = new MetricIdentityCache();
+        final var identity = cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of());
+
+        // when
+        final var rebuiltIdentity = cache.get("somePrefix", "someMetric", List.of(), List.of());
+
+        // then
+        assertThat(rebuiltIdentity).as("Identity was not rebuilt.").isNotSameAs(identity);
+        assertThat(rebuiltIdentity.getDimensions()).as("Outdated global dimensions were used.").isEmpty();
+        assertThat(cache.size()).as("Rebuilt identity was counted as new series.").isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropNewSeriesAboveCardinalityLimit() {
+
+        // given
+        final var cache = new MetricIdentityCache();
+        cache.setMaxSeries(2);
+        cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of(endpoint("/a")));
+        cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of(endpoint("/b")));
+
+        // when
+        final var identity = cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of(endpoint("/c")));
+        final var knownIdentity = cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, List.of(endpoint("/a")));
+
+        // then
+        assertThat(identity).as("Series above cardinality limit was not dropped.").isNull();
+        assertThat(knownIdentity).as("Known series was dropped.").isNotNull();
+        assertThat(cache.getDroppedSeries()).as("Dropped series were not counted.").isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotExceedCardinalityLimitWithConcurrentNewSeries() throws InterruptedException {
+
+        // given
+        final var cache = new MetricIdentityCache();
+        cache.setMaxSeries(100);
+        final var created = new AtomicInteger();
+        final var threads = new Thread[8];
+
+        // when
+        for (var t = 0; t < threads.length; t++) {
+            final var thread = t;
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (var i = 0; i < 1000; i++) {
+                    final var dimensions = List.of(endpoint("/" + thread + "/" + i));
+                    if (cache.get("somePrefix", "someMetric", GLOBAL_DIMENSIONS, dimensions) != null) {
+                        created.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(created).as("More series were created than the limit allows.").hasValue(100);
+        assertThat(cache.size()).as("Series count exceeds the limit.").isEqualTo(100);
+        assertThat(cache.getDroppedSeries()).as("Dropped series were not counted.").isEqualTo(7900);
+    }
+
+    private static DimensionKeyPair endpoint(final String endpoint) {
+        return dimensionKeyPairBuilder().name("Endpoint").value(endpoint).build();
+    }
+}
@@ -1,10 +1,14 @@
 package de.inoxio.spring.cloudwatchmetrics;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 import static de.inoxio.spring.cloudwatchmetrics.MetricKeyPair.MetricKeyPairBuilder.metricKeyPairBuilder;
 
+import java.time.Duration;
+import org.assertj.core.api.ThrowableAssert;
 import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
 
 import nl.jqno.equalsverifier.EqualsVerifier;
 
@@ -26,7 +30,36 @@ class MetricKeyPairTest {
 
         // then
         assertThat(toString).as("String of converted object is not correct.")
-                            .isEqualTo("MetricKeyPair{name='name', value=1.0}");
+                            .isEqualTo("MetricKeyPair{name='name', value=1.0, unit=Count}");
     }
 
+    @Test
+    void shouldConvertDurationIntoUnit() {
+
+        // given
+        final var builder = metricKeyPairBuilder().name("name").value(Duration.ofMillis(1500));
+
+        // when
+        final var milliseconds = builder.build();
+        final var seconds = builder.unit(StandardUnit.SECONDS).build();
+
+        // then
+        assertThat(milliseconds.getValue()).as("Duration was not converted to milliseconds.").isEqualTo(1500.0);
+        assertThat(milliseconds.getUnit()).as("Unit of duration is not milliseconds.")
+                                          .isEqualTo(StandardUnit.MILLISECONDS);
+        assertThat(seconds.getValue()).as("Duration was not converted to seconds.").isEqualTo(1.5);
+    }
+
+    @Test
+    void shouldNotConvertDurationIntoOtherUnit() {
+
+        // given
+        final var builder = metricKeyPairBuilder().name("name").value(Duration.ofMillis(1)).unit(StandardUnit.BYTES);
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = builder::build;
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
 }
\ No newline at end of file
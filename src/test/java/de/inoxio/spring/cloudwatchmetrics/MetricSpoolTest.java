@@ -0,0 +1,167 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+import software.amazon.awssdk.services.cloudwatch.model.StatisticSet;
+
+class MetricSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReplayRequestsInOrder() throws Exception {
+
+        // given
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        final var first = request(0, 2);
+        final var second = request(2, 3);
+        spool.append(first);
+        spool.append(second);
+
+        // when
+        final var replayed = List.of(spool.poll(), spool.poll());
+
+        // then
+        assertThat(replayed).as("Requests were not replayed in order.").containsExactly(first, second);
+        assertThat(spool.poll()).as("Replayed request was returned again.").isNull();
+    }
+
+    @Test
+    void shouldKeepEveryDatumField() throws Exception {
+
+        // given
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        final var request = PutMetricDataRequest.builder()
+                                                .namespace("someNamespace")
+                                                .metricData(MetricDatum.builder()
+                                                                       .metricName("someMetric")
+                                                                       .unit(StandardUnit.MILLISECONDS)
+                                                                       .timestamp(Instant.ofEpochMilli(1234))
+                                                                       .storageResolution(1)
+                                                                       .statisticValues(StatisticSet.builder()
+                                                                                                    .sampleCount(3.0)
+                                                                                                    .sum(6.0)
+                                                                                                    .minimum(1.0)
+                                                                                                    .maximum(3.0)
+                                                                                                    .build())
+                                                                       .dimensions(Dimension.builder()
+                                                                                            .name("someDimension")
+                                                                                            .value("äöü")
+                                                                                            .build())
+                                                                       .build(),
+                                                            MetricDatum.builder()
+                                                                       .metricName("otherMetric")
+                                                                       .values(1.0, 2.0)
+                                                                       .counts(3.0, 4.0)
+                                                                       .build())
+                                                .build();
+
+        // when
+        spool.append(request);
+
+        // then
+        assertThat(spool.poll()).as("Request changed while spooling.").isEqualTo(request);
+    }
+
+    @Test
+    void shouldReplayAfterReopen() throws Exception {
+
+        // given
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        spool.append(request(0, 1));
+        spool.append(request(1, 1));
+        spool.poll();
+        spool.close();
+
+        // when
+        final var reopened = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+
+        // then
+        assertThat(reopened.poll()).as("Unreplayed request was lost on reopen.").isEqualTo(request(1, 1));
+        assertThat(reopened.poll()).as("Replayed request was replayed again.").isNull();
+    }
+
+    @Test
+    void shouldDeleteEmptySegmentOnReopen() throws Exception {
+
+        // given
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        spool.append(request(0, 1));
+        spool.close();
+        final var emptySegment = directory.resolve("metrics-0000000000000000001" + MetricSpool.SEGMENT_SUFFIX);
+        final var empty = Files.createFile(emptySegment);
+
+        // when
+        final var reopened = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+
+        // then
+        assertThat(empty).as("Empty segment was not deleted.").doesNotExist();
+        assertThat(reopened.getSegmentCount()).as("Empty segment was opened.").isEqualTo(1);
+        assertThat(reopened.poll()).as("Request before the empty segment was lost.").isEqualTo(request(0, 1));
+    }
+
+    @Test
+    void shouldRotateSegmentsAndDeleteReplayedOnes() throws Exception {
+
+        // given
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(4), DataSize.ofMegabytes(1));
+        final var requests = IntStream.range(0, 20).mapToObj(i -> request(i * 10, 10)).toList();
+        for (final var request : requests) {
+            spool.append(request);
+        }
+        final var segments = spool.getSegmentCount();
+
+        // when
+        for (final var request : requests) {
+            assertThat(spool.poll()).as("Requests were not replayed in order across segments.").isEqualTo(request);
+        }
+
+        // then
+        assertThat(segments).as("Segments were not rotated.").isGreaterThan(1);
+        assertThat(spool.getSegmentCount()).as("Replayed segments were not deleted.").isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropOldestSegmentAboveDiskBudget() throws Exception {
+
+        // given
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(4), DataSize.ofKilobytes(8));
+
+        // when
+        for (var i = 0; i < 100; i++) {
+            spool.append(request(i * 10, 10));
+        }
+
+        // then
+        assertThat(spool.getSegmentCount()).as("Disk budget was exceeded.").isEqualTo(2);
+        assertThat(spool.getDroppedDatums()).as("Dropped datums were not counted.").isPositive();
+        assertThat(spool.poll().metricData().getFirst().metricName()).as("Oldest requests were not dropped.")
+                                                                   .isNotEqualTo("someMetric0");
+    }
+
+    private static PutMetricDataRequest request(final int from, final int count) {
+        return PutMetricDataRequest.builder()
+                                   .namespace("someNamespace")
+                                   .metricData(IntStream.range(from, from + count)
+                                                        .mapToObj(i -> MetricDatum.builder()
+                                                                                  .metricName("someMetric" + i)
+                                                                                  .value((double) i)
+                                                                                  .unit(StandardUnit.COUNT)
+                                                                                  .build())
+                                                        .toList())
+                                   .build();
+    }
+}
@@ -0,0 +1,148 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.assertj.core.api.ThrowableAssert;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+class MetricTimedAspectTest {
+
+    @Test
+    void shouldTimeAnnotatedMethod() {
+
+        // given
+        final var cloudwatchMeters = mock(CloudwatchMeters.class);
+        final var timer = new MetricTimer("someTimer");
+        given(cloudwatchMeters.timer("someTimer", StandardUnit.MILLISECONDS, MetricAggregation.STATISTIC_SET))
+                .willReturn(timer);
+        final var service = proxy(new SomeService(), cloudwatchMeters);
+
+        // when
+        service.timed();
+        service.timed();
+
+        // then
+        assertThat(sampleCount(timer)).as("Invocations were not timed.").isEqualTo(2.0);
+        then(cloudwatchMeters).should()
+                              .timer("someTimer", StandardUnit.MILLISECONDS, MetricAggregation.STATISTIC_SET);
+    }
+
+    @Test
+    void shouldNameTimerAfterMethodByDefault() {
+
+        // given
+        final var cloudwatchMeters = mock(CloudwatchMeters.class);
+        final var timer = new MetricTimer("SomeService.unnamed",
+                                          StandardUnit.SECONDS,
+                                          false,
+                                          MetricAggregation.HISTOGRAM);
+        given(cloudwatchMeters.timer("SomeService.unnamed", StandardUnit.SECONDS, MetricAggregation.HISTOGRAM))
+                .willReturn(timer);
+        final var service = proxy(new SomeService(), cloudwatchMeters);
+
+        // when
+        service.unnamed();
+
+        // then
+        then(cloudwatchMeters).should().timer("SomeService.unnamed", StandardUnit.SECONDS, MetricAggregation.HISTOGRAM);
+    }
+
+    @Test
+    void shouldTimeFailedInvocation() {
+
+        // given
+        final var cloudwatchMeters = mock(CloudwatchMeters.class);
+        final var timer = new MetricTimer("someTimer");
+        given(cloudwatchMeters.timer("failing", StandardUnit.MILLISECONDS, MetricAggregation.STATISTIC_SET))
+                .willReturn(timer);
+        final var service = proxy(new SomeService(), cloudwatchMeters);
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = service::failing;
+
+        // then
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(callable);
+        assertThat(sampleCount(timer)).as("Failed invocation was not timed.").isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldInvokeMethodUntimedWhenTimerCannotBeCreated() {
+
+        // given
+        final var cloudwatchMeters = mock(CloudwatchMeters.class);
+        given(cloudwatchMeters.timer("someTimer", StandardUnit.MILLISECONDS, MetricAggregation.STATISTIC_SET))
+                .willThrow(new IllegalArgumentException("Timer someTimer is already registered!"));
+        final var service = proxy(new SomeService(), cloudwatchMeters);
+
+        // when
+        service.timed();
+        service.timed();
+
+        // then
+        assertThat(service.invocations()).as("Method was not invoked.").isEqualTo(2);
+        then(cloudwatchMeters).should()
+                              .timer("someTimer", StandardUnit.MILLISECONDS, MetricAggregation.STATISTIC_SET);
+    }
+
+    @Test
+    void shouldNotTimeMethodWithoutAnnotation() {
+
+        // given
+        final var cloudwatchMeters = mock(CloudwatchMeters.class);
+        final var service = proxy(new SomeService(), cloudwatchMeters);
+
+        // when
+        service.untimed();
+
+        // then
+        then(cloudwatchMeters).shouldHaveNoInteractions();
+    }
+
+    private static SomeService proxy(final SomeService service, final CloudwatchMeters cloudwatchMeters) {
+        final var proxyFactory = new AspectJProxyFactory(service);
+        proxyFactory.addAspect(new MetricTimedAspect(cloudwatchMeters));
+        return proxyFactory.getProxy();
+    }
+
+    private static double sampleCount(final MetricTimer timer) {
+        final var metricDatums = new ArrayList<MetricDatum>();
+        timer.addMetricDatums(List.of(), Instant.EPOCH, metricDatums);
+        return metricDatums.get(0).statisticValues().sampleCount();
+    }
+
+    static class SomeService {
+
+        private int invocations;
+
+        @MetricTimed("someTimer")
+        public void timed() {
+            invocations++;
+        }
+
+        public int invocations() {
+            return invocations;
+        }
+
+        @MetricTimed(unit = StandardUnit.SECONDS, aggregation = MetricAggregation.HISTOGRAM)
+        public void unnamed() {
+        }
+
+        @MetricTimed("failing")
+        public void failing() {
+            throw new IllegalStateException("Failed!");
+        }
+
+        public void untimed() {
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.ThrowableAssert;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+class MetricTimerTest {
+
+    @Test
+    void shouldConvertRecordedDurationsToStatisticSetInMilliseconds() {
+
+        // given
+        final var timer = new MetricTimer("someTimer");
+        timer.record(Duration.ofMillis(10));
+        timer.record(30, TimeUnit.MILLISECONDS);
+        timer.recordNanos(20_000_000);
+
+        // when
+        final var metricDatums = metricDatums(timer);
+
+        // then
+        assertThat(metricDatums).as("Timer was not converted to one datum.").hasSize(1);
+        final var metricDatum = metricDatums.get(0);
+        assertThat(metricDatum.unit()).as("Unit of timer is incorrect.").isEqualTo(StandardUnit.MILLISECONDS);
+        assertThat(metricDatum.statisticValues().sampleCount()).as("Sample count is incorrect.").isEqualTo(3.0);
+        assertThat(metricDatum.statisticValues().sum()).as("Sum is incorrect.").isEqualTo(60.0);
+        assertThat(metricDatum.statisticValues().minimum()).as("Minimum is incorrect.").isEqualTo(10.0);
+        assertThat(metricDatum.statisticValues().maximum()).as("Maximum is incorrect.").isEqualTo(30.0);
+    }
+
+    @Test
+    void shouldConvertRecordedDurationsIntoConfiguredUnit() {
+
+        // given
+        final var timer = new MetricTimer("someTimer", StandardUnit.SECONDS, false);
+        timer.record(Duration.ofMillis(1500));
+
+        // when
+        final var metricDatums = metricDatums(timer);
+
+        // then
+        final var metricDatum = metricDatums.get(0);
+        assertThat(metricDatum.unit()).as("Unit of timer is incorrect.").isEqualTo(StandardUnit.SECONDS);
+        assertThat(metricDatum.statisticValues().sum()).as("Sum was not converted to seconds.").isEqualTo(1.5);
+    }
+
+    @Test
+    void shouldNotCreateTimerWithoutTimeUnit() {
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = () -> new MetricTimer("someTimer", StandardUnit.BYTES, false);
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldRecordSampleWhenClosed() {
+
+        // given
+        final var timer = new MetricTimer("someTimer");
+
+        // when
+        try (var sample = timer.start()) {
+            assertThat(sample).as("Sample was not started.").isNotNull();
+        }
+
+        // then
+        final var metricDatums = metricDatums(timer);
+        assertThat(metricDatums.get(0).statisticValues().sampleCount()).as("Sample was not recorded.").isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldConvertRecordedDurationsToHistogram() {
+
+        // given
+        final var timer = new MetricTimer("someTimer", StandardUnit.MILLISECONDS, false, MetricAggregation.HISTOGRAM);
+        for (var i = 0; i < 100; i++) {
+            timer.record(Duration.ofMillis(100));
+        }
+        timer.record(Duration.ofSeconds(1));
+
+        // when
+        final var metricDatums = metricDatums(timer);
+
+        // then
+        final var metricDatum = metricDatums.get(0);
+        assertThat(metricDatum.unit()).as("Unit of timer is incorrect.").isEqualTo(StandardUnit.MILLISECONDS);
+        assertThat(metricDatum.counts()).as("Samples were not counted in buckets.").containsExactly(100.0, 1.0);
+        assertThat(metricDatum.values().get(0)).as("Bucket value is not close to recorded duration.")
+                                               .isCloseTo(100.0, within(1.0));
+        assertThat(metricDatums(timer)).as("Histogram was not reset on flush.").isEmpty();
+    }
+
+    @Test
+    void shouldUseConfiguredRelativeErrorForHistogram() {
+
+        // given
+        final var timer = new MetricTimer("someTimer",
+                                          StandardUnit.MILLISECONDS,
+                                          false,
+                                          MetricAggregation.HISTOGRAM,
+                                          0.2);
+        timer.record(Duration.ofMillis(100));
+        timer.record(Duration.ofMillis(110));
+
+        // when
+        final var metricDatums = metricDatums(timer);
+
+        // then
+        assertThat(metricDatums.get(0).counts()).as("Close samples were not counted in one wide bucket.")
+                                                .containsExactly(2.0);
+    }
+
+    @Test
+    void shouldNotCreateTimerAggregatingValues() {
+
+        // when
+        final ThrowableAssert.ThrowingCallable callable = () -> new MetricTimer("someTimer",
+                                                                                StandardUnit.MILLISECONDS,
+                                                                                false,
+                                                                                MetricAggregation.VALUES);
+
+        // then
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(callable);
+    }
+
+    @Test
+    void shouldOnlyConvertSamplesSinceLastFlush() {
+
+        // given
+        final var timer = new MetricTimer("someTimer");
+        timer.record(Duration.ofMillis(10));
+        metricDatums(timer);
+        timer.record(Duration.ofMillis(50));
+
+        // when
+        final var metricDatums = metricDatums(timer);
+
+        // then
+        assertThat(metricDatums.get(0).statisticValues().sampleCount()).as("Flushed samples were sent again.")
+                                                                       .isEqualTo(1.0);
+        assertThat(metricDatums.get(0).statisticValues().minimum()).as("Minimum was not reset.").isEqualTo(50.0);
+    }
+
+    @Test
+    void shouldNotConvertTimerWithoutSamples() {
+
+        // given
+        final var timer = new MetricTimer("someTimer");
+
+        // when
+        final var metricDatums = metricDatums(timer);
+
+        // then
+        assertThat(metricDatums).as("Timer without samples was converted.").isEmpty();
+    }
+
+    private static List<MetricDatum> metricDatums(final MetricTimer timer) {
+        final var metricDatums = new ArrayList<MetricDatum>();
+        timer.addMetricDatums(List.of(), Instant.EPOCH, metricDatums);
+        return metricDatums;
+    }
+}
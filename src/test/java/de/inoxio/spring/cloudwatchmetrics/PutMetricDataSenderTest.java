@@ -0,0 +1,525 @@
+package de.inoxio.spring.cloudwatchmetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.cloudwatch.CloudWatchAsyncClient;
+import software.amazon.awssdk.services.cloudwatch.model.CloudWatchException;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataResponse;
+
+class PutMetricDataSenderTest {
+
+    @Test
+    void shouldSplitDatumsAtRequestLimit() {
+
+        // given
+        final var sender = new PutMetricDataSender(mock(CloudWatchAsyncClient.class), 1);
+        final var metricDatums = metricDatums(PutMetricDataSender.MAX_DATUMS_PER_REQUEST * 2 + 1);
+
+        // when
+        final var chunks = sender.chunk("someNamespace", metricDatums);
+
+        // then
+        assertThat(chunks).as("Datums were not split into maximal requests.")
+                          .extracting(List::size)
+                          .containsExactly(PutMetricDataSender.MAX_DATUMS_PER_REQUEST,
+                                           PutMetricDataSender.MAX_DATUMS_PER_REQUEST,
+                                           1);
+    }
+
+    @Test
+    void shouldSplitDatumsAtPayloadLimit() {
+
+        // given
+        final var sender = new PutMetricDataSender(mock(CloudWatchAsyncClient.class), 1);
+        final var dimensions = IntStream.range(0, 30)
+                                        .mapToObj(i -> Dimension.builder()
+                                                                .name("someDimension" + i)
+                                                                .value("x".repeat(250))
+                                                                .build())
+                                        .toList();
+        final var metricDatums = metricDatums(200).stream()
+                                                  .map(metricDatum -> metricDatum.toBuilder()
+                                                                                 .dimensions(dimensions)
+                                                                                 .build())
+                                                  .toList();
+
+        // when
+        final var chunks = sender.chunk("someNamespace", metricDatums);
+
+        // then
+        assertThat(chunks).as("Datums were not split by payload size.").hasSizeGreaterThan(1);
+        assertThat(chunks).as("Chunk exceeds payload limit.")
+                          .allSatisfy(chunk -> assertThat(chunk.stream()
+                                                               .mapToInt(PutMetricDataSender::estimateSize)
+                                                               .sum()).isLessThanOrEqualTo(
+                                  PutMetricDataSender.MAX_REQUEST_BYTES));
+        assertThat(chunks).as("Datums were lost while chunking.").flatExtracting(chunk -> chunk).hasSize(200);
+    }
+
+    @Test
+    void shouldSendEveryChunk() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 2);
+
+        // when
+        sender.send("someNamespace", metricDatums(PutMetricDataSender.MAX_DATUMS_PER_REQUEST * 3)).join();
+
+        // then
+        then(cloudWatchClient).should(times(3)).putMetricData(any(PutMetricDataRequest.class));
+    }
+
+    @Test
+    void shouldLimitConcurrentRequests() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var pendingResponses = new ArrayList<CompletableFuture<PutMetricDataResponse>>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willAnswer(invocation -> {
+            final var response = new CompletableFuture<PutMetricDataResponse>();
+            pendingResponses.add(response);
+            return response;
+        });
+        final var sender = new PutMetricDataSender(cloudWatchClient, 2);
+
+        // when
+        final var sent = sender.send("someNamespace", metricDatums(PutMetricDataSender.MAX_DATUMS_PER_REQUEST * 3));
+
+        // then
+        assertThat(pendingResponses).as("More requests in flight than allowed.").hasSize(2);
+
+        pendingResponses.get(0).complete(PutMetricDataResponse.builder().build());
+        assertThat(pendingResponses).as("Next chunk was not sent after completion.").hasSize(3);
+
+        pendingResponses.get(1).complete(PutMetricDataResponse.builder().build());
+        pendingResponses.get(2).complete(PutMetricDataResponse.builder().build());
+        assertThat(sent).as("Send did not complete after all chunks.").isCompleted();
+    }
+
+    @Test
+    void shouldContinueSendingWhenChunkFails() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.failedFuture(new RuntimeException("Test exception. IGNORE!")))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+
+        // when
+        sender.send("someNamespace", metricDatums(PutMetricDataSender.MAX_DATUMS_PER_REQUEST * 2)).join();
+
+        // then
+        then(cloudWatchClient).should(times(2)).putMetricData(any(PutMetricDataRequest.class));
+    }
+
+    @Test
+    void shouldDropOldestPendingRequestOnOverflow() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var sentRequests = new ArrayList<PutMetricDataRequest>();
+        final var pendingResponses = new ArrayList<CompletableFuture<PutMetricDataResponse>>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willAnswer(invocation -> {
+            final var response = new CompletableFuture<PutMetricDataResponse>();
+            sentRequests.add(invocation.getArgument(0));
+            pendingResponses.add(response);
+            return response;
+        });
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxPendingRequests(1);
+        sender.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+
+        // when
+        sender.send("someNamespace", metricDatums(1));
+        final var dropped = sender.send("someNamespace", metricDatums(2));
+        sender.send("someNamespace", metricDatums(3));
+        pendingResponses.get(0).complete(PutMetricDataResponse.builder().build());
+
+        // then
+        assertThat(dropped).as("Dropped request was not completed.").isCompleted();
+        assertThat(sender.getDroppedRequests()).as("Dropped request was not counted.").isEqualTo(1);
+        assertThat(sender.getDroppedDatums()).as("Dropped datums were not counted.").isEqualTo(2);
+        assertThat(sentRequests).as("Newest request was not sent.")
+                                .extracting(request -> request.metricData().size())
+                                .containsExactly(1, 3);
+    }
+
+    @Test
+    void shouldDropOldestNewRequestInsteadOfRetry() throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var sentRequests = new ArrayList<PutMetricDataRequest>();
+        final var pendingResponses = new ArrayList<CompletableFuture<PutMetricDataResponse>>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willAnswer(invocation -> {
+            final var response = new CompletableFuture<PutMetricDataResponse>();
+            synchronized (pendingResponses) {
+                sentRequests.add(invocation.getArgument(0));
+                pendingResponses.add(response);
+            }
+            return response;
+        });
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxPendingRequests(2);
+        sender.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        sender.setRetryBaseDelay(Duration.ofMillis(1));
+        sender.send("someNamespace", metricDatums(1));
+        sender.send("someNamespace", metricDatums(2));
+        pendingResponses.get(0).completeExceptionally(CloudWatchException.builder().statusCode(500).build());
+        // the retry is back in the queue
+        Thread.sleep(100);
+        sender.send("someNamespace", metricDatums(3));
+
+        // when
+        sender.send("someNamespace", metricDatums(4));
+        for (var i = 1; i < pendingResponses.size(); i++) {
+            pendingResponses.get(i).complete(PutMetricDataResponse.builder().build());
+        }
+
+        // then
+        assertThat(sender.getDroppedRequests()).as("Not exactly one request was dropped.").isEqualTo(1);
+        assertThat(sentRequests).as("Retry was dropped.")
+                                .filteredOn(request -> request.metricData().size() == 1)
+                                .hasSize(2);
+    }
+
+    @Test
+    void shouldDropNewestRequestOnOverflow() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var sentRequests = new ArrayList<PutMetricDataRequest>();
+        final var pendingResponses = new ArrayList<CompletableFuture<PutMetricDataResponse>>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willAnswer(invocation -> {
+            final var response = new CompletableFuture<PutMetricDataResponse>();
+            sentRequests.add(invocation.getArgument(0));
+            pendingResponses.add(response);
+            return response;
+        });
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxPendingRequests(1);
+        sender.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+
+        // when
+        sender.send("someNamespace", metricDatums(1));
+        sender.send("someNamespace", metricDatums(2));
+        final var dropped = sender.send("someNamespace", metricDatums(3));
+        pendingResponses.get(0).complete(PutMetricDataResponse.builder().build());
+
+        // then
+        assertThat(dropped).as("Dropped request was not completed.").isCompleted();
+        assertThat(sender.getDroppedDatums()).as("Dropped datums were not counted.").isEqualTo(3);
+        assertThat(sentRequests).as("Oldest request was not sent.")
+                                .extracting(request -> request.metricData().size())
+                                .containsExactly(1, 2);
+    }
+
+    @Test
+    void shouldDropBlockedRequestAfterTimeout() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willReturn(new CompletableFuture<>());
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxPendingRequests(1);
+        sender.setOverflowPolicy(OverflowPolicy.BLOCK);
+        sender.setOverflowBlockTimeout(Duration.ofMillis(10));
+        sender.send("someNamespace", metricDatums(1));
+        sender.send("someNamespace", metricDatums(2));
+
+        // when
+        final var start = System.nanoTime();
+        final var dropped = sender.send("someNamespace", metricDatums(3));
+
+        // then
+        assertThat(System.nanoTime() - start).as("Sender did not block.")
+                                             .isGreaterThanOrEqualTo(Duration.ofMillis(10).toNanos());
+        assertThat(dropped).as("Dropped request was not completed.").isCompleted();
+        assertThat(sender.getDroppedDatums()).as("Dropped datums were not counted.").isEqualTo(3);
+    }
+
+    @Test
+    void shouldUnblockWhenRequestCompletes() throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var firstResponse = new CompletableFuture<PutMetricDataResponse>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(firstResponse)
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxPendingRequests(1);
+        sender.setOverflowPolicy(OverflowPolicy.BLOCK);
+        sender.setOverflowBlockTimeout(Duration.ofSeconds(10));
+        sender.send("someNamespace", metricDatums(1));
+        sender.send("someNamespace", metricDatums(2));
+
+        // when
+        final var blocked = CompletableFuture.supplyAsync(() -> sender.send("someNamespace", metricDatums(3)));
+        Thread.sleep(50);
+        firstResponse.complete(PutMetricDataResponse.builder().build());
+        blocked.get(5, TimeUnit.SECONDS).join();
+
+        // then
+        assertThat(sender.getDroppedRequests()).as("Blocked request was dropped.").isZero();
+        then(cloudWatchClient).should(times(3)).putMetricData(any(PutMetricDataRequest.class));
+    }
+
+    @Test
+    void shouldRetryThrottledRequest() throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.failedFuture(throttlingException()))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setRetryBaseDelay(Duration.ofMillis(1));
+        final var maxRate = sender.getRateLimiter().getRate();
+
+        // when
+        sender.send("someNamespace", metricDatums(1)).get(5, TimeUnit.SECONDS);
+
+        // then
+        then(cloudWatchClient).should(times(2)).putMetricData(any(PutMetricDataRequest.class));
+        assertThat(sender.getRateLimiter().getRate()).as("Rate was not lowered on throttling.").isLessThan(maxRate);
+        assertThat(sender.getUndeliveredDatums()).as("Retried datums were kept.").isZero();
+    }
+
+    @Test
+    void shouldCountRequestsWaitingForRetryTowardsPendingRequests() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.failedFuture(CloudWatchException.builder().statusCode(500).build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxPendingRequests(1);
+        sender.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        sender.setRetryBaseDelay(Duration.ofHours(1));
+        sender.setRetryMaxDelay(Duration.ofHours(1));
+        sender.send("someNamespace", metricDatums(1));
+
+        // when
+        final var dropped = sender.send("someNamespace", metricDatums(2));
+
+        // then
+        assertThat(dropped).as("Dropped request was not completed.").isCompleted();
+        assertThat(sender.getDroppedDatums()).as("Request beyond the window was not dropped.").isEqualTo(2);
+        then(cloudWatchClient).should(times(1)).putMetricData(any(PutMetricDataRequest.class));
+    }
+
+    @Test
+    void shouldMergeUndeliveredDatumsIntoNextSend() throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var sentRequests = new ArrayList<PutMetricDataRequest>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willAnswer(invocation -> {
+            sentRequests.add(invocation.getArgument(0));
+            return sentRequests.size() <= 2
+                   ? CompletableFuture.failedFuture(CloudWatchException.builder().statusCode(500).build())
+                   : CompletableFuture.completedFuture(PutMetricDataResponse.builder().build());
+        });
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxRetries(1);
+        sender.setRetryBaseDelay(Duration.ofMillis(1));
+        sender.send("someNamespace", metricDatums(2)).get(5, TimeUnit.SECONDS);
+
+        // when
+        sender.send("someNamespace", metricDatums(3)).get(5, TimeUnit.SECONDS);
+
+        // then
+        assertThat(sentRequests).as("Undelivered datums were not merged into the next request.")
+                                .extracting(request -> request.metricData().size())
+                                .containsExactly(2, 2, 5);
+        assertThat(sender.getUndeliveredDatums()).as("Delivered datums are still kept.").isZero();
+    }
+
+    @Test
+    void shouldNotRetryRejectedRequest() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.failedFuture(CloudWatchException.builder().statusCode(400).build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+
+        // when
+        sender.send("someNamespace", metricDatums(1)).join();
+
+        // then
+        then(cloudWatchClient).should(times(1)).putMetricData(any(PutMetricDataRequest.class));
+        assertThat(sender.getUndeliveredDatums()).as("Rejected datums were kept.").isZero();
+        assertThat(sender.getDroppedDatums()).as("Rejected datums were not counted as dropped.").isEqualTo(1);
+    }
+
+    @Test
+    void shouldReleaseSlotWhenClientThrows() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willThrow(new IllegalStateException("Client is closed!"))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        final var failed = sender.send("someNamespace", metricDatums(1));
+
+        // when
+        final var sent = sender.send("someNamespace", metricDatums(2));
+
+        // then
+        assertThat(failed).as("Request of throwing client was not completed.").isCompleted();
+        assertThat(sent).as("Slot of throwing client was not released.").isCompleted();
+        assertThat(sender.getDroppedDatums()).as("Datums of throwing client were not counted.").isEqualTo(1);
+        assertThat(sender.close(Duration.ofSeconds(1))).as("Close waited for a leaked slot.").isTrue();
+    }
+
+    @Test
+    void shouldReleaseSlotWhenSpoolFails() throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var spool = mock(MetricSpool.class);
+        given(spool.poll()).willThrow(new IllegalStateException("Corrupt segment!"));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setSpool(spool);
+        sender.send("someNamespace", metricDatums(1));
+
+        // when
+        final var sent = sender.send("someNamespace", metricDatums(2));
+
+        // then
+        assertThat(sent).as("Slot was leaked by the failing spool.").isCompleted();
+        assertThat(sender.close(Duration.ofSeconds(1))).as("Close waited for a leaked slot.").isTrue();
+    }
+
+    @Test
+    void shouldSpoolUndeliveredRequestAndReplayItAfterSuccess(@TempDir final Path directory) throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        final var sentRequests = new ArrayList<PutMetricDataRequest>();
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willAnswer(invocation -> {
+            sentRequests.add(invocation.getArgument(0));
+            return sentRequests.size() == 1
+                   ? CompletableFuture.failedFuture(CloudWatchException.builder().statusCode(503).build())
+                   : CompletableFuture.completedFuture(PutMetricDataResponse.builder().build());
+        });
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxRetries(0);
+        sender.setSpool(new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1)));
+        sender.send("someNamespace", metricDatums(2)).get(5, TimeUnit.SECONDS);
+
+        // when
+        sender.send("someNamespace", metricDatums(3)).get(5, TimeUnit.SECONDS);
+
+        // then
+        assertThat(sender.getUndeliveredDatums()).as("Spooled datums were kept in memory.").isZero();
+        assertThat(sentRequests).as("Spooled request was not replayed after the next success.")
+                                .extracting(request -> request.metricData().size())
+                                .containsExactly(2, 3, 2);
+    }
+
+    @Test
+    void shouldReplaySpoolOnStartAndPeriodically(@TempDir final Path directory) throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.failedFuture(CloudWatchException.builder().statusCode(503).build()))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        spool.append(PutMetricDataRequest.builder().namespace("someNamespace").metricData(metricDatums(2)).build());
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setMaxRetries(0);
+        sender.setSpool(spool);
+
+        // when
+        sender.startReplay(Duration.ofMillis(10));
+
+        // then
+        then(cloudWatchClient).should(timeout(1000).times(2)).putMetricData(any(PutMetricDataRequest.class));
+        assertThat(sender.close(Duration.ofSeconds(1))).as("Replayed request was not answered.").isTrue();
+        assertThat(spool.poll()).as("Spool was not replayed without new metrics.").isNull();
+    }
+
+    @Test
+    void shouldSpoolPendingRequestsWhenCloseTimesOut(@TempDir final Path directory) throws Exception {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class))).willReturn(new CompletableFuture<>());
+        final var spool = new MetricSpool(directory, DataSize.ofKilobytes(64), DataSize.ofMegabytes(1));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.setSpool(spool);
+        sender.send("someNamespace", metricDatums(1));
+        final var pending = sender.send("someNamespace", metricDatums(2));
+
+        // when
+        final var closed = sender.close(Duration.ofMillis(10));
+
+        // then
+        assertThat(closed).as("Close did not time out.").isFalse();
+        assertThat(pending).as("Pending request was not completed.").isCompleted();
+        assertThat(spool.poll().metricData()).as("Pending request was not spooled.").hasSize(2);
+    }
+
+    @Test
+    void shouldCloseWhenEveryRequestIsAnswered() {
+
+        // given
+        final var cloudWatchClient = mock(CloudWatchAsyncClient.class);
+        given(cloudWatchClient.putMetricData(any(PutMetricDataRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(PutMetricDataResponse.builder().build()));
+        final var sender = new PutMetricDataSender(cloudWatchClient, 1);
+        sender.send("someNamespace", metricDatums(1));
+
+        // when
+        final var closed = sender.close(Duration.ofSeconds(1));
+
+        // then
+        assertThat(closed).as("Close timed out although every request was answered.").isTrue();
+    }
+
+    private static CloudWatchException throttlingException() {
+        return (CloudWatchException) CloudWatchException.builder()
+                                                        .statusCode(400)
+                                                        .awsErrorDetails(AwsErrorDetails.builder()
+                                                                                        .errorCode("Throttling")
+                                                                                        .build())
+                                                        .build();
+    }
+
+    private static List<MetricDatum> metricDatums(final int count) {
+        return IntStream.range(0, count)
+                        .mapToObj(i -> MetricDatum.builder().metricName("someMetric" + i).value((double) i).build())
+                        .toList();
+    }
+}